@@ -0,0 +1,91 @@
+package crypto.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import crypto.Decrypt;
+import crypto.Encrypt;
+import crypto.Helper;
+import crypto.MessageBatch;
+
+/**
+ * Groups of short messages encoded and broken one call per message, and with
+ * the batch methods on a packed buffer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+  @Param({ "1000", "10000" })
+  int messages;
+
+  @Param({ "128" })
+  int size;
+
+  @Param({ "0", "1" })
+  int type;
+
+  List<String> plainTexts;
+  List<String> cipherTexts;
+  MessageBatch plainBatch;
+  MessageBatch cipherBatch;
+  String key;
+
+  @Setup
+  public void setup() {
+    byte[] text = Corpus.load("long_text.txt", messages * size);
+    key = (type == Encrypt.CAESAR) ? "2" : "key";
+    plainTexts = new ArrayList<String>(messages);
+    cipherTexts = new ArrayList<String>(messages);
+    for (int i = 0; i < messages; ++i) {
+      String message = Helper.bytesToString(Arrays.copyOfRange(text, i * size, (i + 1) * size));
+      plainTexts.add(message);
+      cipherTexts.add(Encrypt.encrypt(message, key, type));
+    }
+    plainBatch = MessageBatch.of(plainTexts);
+    cipherBatch = MessageBatch.of(cipherTexts);
+  }
+
+  @Benchmark
+  public void encryptEach(Blackhole blackhole) {
+    for (String message : plainTexts) {
+      blackhole.consume(Encrypt.encrypt(message, key, type));
+    }
+  }
+
+  @Benchmark
+  public MessageBatch encryptBatch() {
+    return Encrypt.encryptBatch(plainBatch, Helper.stringToBytes(key), type);
+  }
+
+  @Benchmark
+  public void breakCipherEach(Blackhole blackhole) {
+    for (String message : cipherTexts) {
+      blackhole.consume(Decrypt.breakCipher(message, type));
+    }
+  }
+
+  @Benchmark
+  public MessageBatch breakCipherBatch() {
+    return Decrypt.breakCipherBatch(cipherBatch, type);
+  }
+}
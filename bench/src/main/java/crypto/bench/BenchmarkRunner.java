@@ -0,0 +1,36 @@
+package crypto.bench;
+
+import java.lang.module.ModuleFinder;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar : runs the benchmarks selected on the command
+ * line (same options as the JMH runner) with the GC profiler, so that the
+ * allocation rate is reported next to the throughput.
+ *
+ * When the JDK has the incubating Vector API (17 and later), the forked JVMs
+ * get --add-modules=jdk.incubator.vector so that the vectorized kernels are
+ * measured, unless -jvmArgsPrepend is given. Older JDKs don't have the module
+ * and would not start with the flag, so it is left out and the scalar kernels
+ * are measured.
+ */
+public class BenchmarkRunner {
+
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(commandLine).addProfiler(GCProfiler.class);
+    if (!commandLine.getJvmArgsPrepend().hasValue() && ModuleFinder.ofSystem().find(VECTOR_MODULE).isPresent()) {
+      options.jvmArgsPrepend("--add-modules=" + VECTOR_MODULE);
+    }
+    new Runner(options.build()).run();
+  }
+}
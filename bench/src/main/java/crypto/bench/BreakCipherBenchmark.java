@@ -0,0 +1,110 @@
+package crypto.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crypto.BreakCache;
+import crypto.ByteSequence;
+import crypto.Decrypt;
+import crypto.Encrypt;
+import crypto.Helper;
+import crypto.KasiskiEstimator;
+
+/**
+ * Throughput of the Vigenere key search and of
+ * {@link Decrypt#breakCipher(String, int)}. The key length search is quadratic
+ * and the XOR break returns the 256 possible texts, so the sizes stop at 16 KB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BreakCipherBenchmark {
+
+  @Param({ "1024", "4096", "16384" })
+  int size;
+
+  @Param({ "long_text.txt" })
+  String corpus;
+
+  @Param({ "0", "1", "2" })
+  int type;
+
+  List<Byte> vigenereWithoutSpaces;
+  ByteSequence vigenereSequence;
+  int keyLength;
+  int[] keyLengths;
+  byte[] vigenereArray;
+  String cipher;
+  BreakCache cache;
+
+  @Setup
+  public void setup() {
+    byte[] plainText = Corpus.load(corpus, size);
+    byte[] keyword = { 12, -34, 125, 89, -45 };
+    vigenereWithoutSpaces = Decrypt.removeSpaces(Encrypt.vigenere(plainText, keyword));
+    vigenereSequence = ByteSequence.of(vigenereWithoutSpaces);
+    keyLength = keyword.length;
+    keyLengths = Decrypt.vigenereFindKeyLengths(vigenereSequence, Decrypt.KEY_LENGTH_CANDIDATES);
+    vigenereArray = vigenereSequence.toArray();
+
+    byte[] key = (type == Encrypt.VIGENERE) ? keyword : new byte[] { 50 };
+    cipher = Encrypt.encrypt(Helper.bytesToString(plainText), Helper.bytesToString(key), type);
+    cache = new BreakCache(16);
+    Decrypt.breakCipher(cipher, type, cache); // every measured break is a hit
+  }
+
+  @Benchmark
+  public int vigenereFindKeyLength() {
+    return Decrypt.vigenereFindKeyLength(vigenereWithoutSpaces);
+  }
+
+  @Benchmark
+  public byte[] vigenereFindKey() {
+    return Decrypt.vigenereFindKey(vigenereWithoutSpaces, keyLength);
+  }
+
+  @Benchmark
+  public int vigenereFindKeyLengthPrimitive() {
+    return Decrypt.vigenereFindKeyLength(vigenereSequence);
+  }
+
+  @Benchmark
+  public int vigenereFindKeyLengthKasiski() {
+    return KasiskiEstimator.findKeyLength(vigenereArray);
+  }
+
+  @Benchmark
+  public byte[] vigenereFindKeyPrimitive() {
+    return Decrypt.vigenereFindKey(vigenereSequence, keyLength);
+  }
+
+  @Benchmark
+  public byte[] vigenereFindKeyCandidates() {
+    return Decrypt.vigenereFindKey(vigenereSequence, keyLengths);
+  }
+
+  @Benchmark
+  public String breakCipher() {
+    return Decrypt.breakCipher(cipher, type);
+  }
+
+  @Benchmark
+  public String breakCipherCached() {
+    return Decrypt.breakCipher(cipher, type, cache);
+  }
+}
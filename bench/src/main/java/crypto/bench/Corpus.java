@@ -0,0 +1,63 @@
+package crypto.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import crypto.Helper;
+
+/**
+ * Builds benchmark inputs of a given size from the texts of the res/ folder.
+ * The folder is looked up in the working directory, its parent (when running
+ * from bench/), or in the directory given by the crypto.res system property.
+ */
+final class Corpus {
+
+  private Corpus() {
+  }
+
+  /**
+   * Reads a text of res/, cleans it like a message to encode and repeats it
+   * until the requested size is reached
+   *
+   * @param name the name of the file in res/
+   * @param size the number of bytes wanted
+   * @return the cleaned text, exactly size bytes long
+   */
+  static byte[] load(String name, int size) {
+    byte[] text = Helper.stringToBytes(Helper.cleanString(new String(read(name), StandardCharsets.ISO_8859_1)));
+    byte[] result = new byte[size];
+    for (int i = 0; i < size; i += text.length) {
+      System.arraycopy(text, 0, result, i, Math.min(text.length, size - i));
+    }
+    return result;
+  }
+
+  private static byte[] read(String name) {
+    try {
+      return Files.readAllBytes(file(name));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @param name the name of a file in res/
+   * @return the path of the file
+   */
+  static Path file(String name) {
+    String configured = System.getProperty("crypto.res");
+    Path[] candidates = configured != null ? new Path[] { Paths.get(configured) }
+        : new Path[] { Paths.get("res"), Paths.get("..", "res") };
+    for (Path directory : candidates) {
+      Path file = directory.resolve(name);
+      if (Files.isRegularFile(file)) {
+        return file;
+      }
+    }
+    throw new IllegalStateException("Corpus " + name + " not found, set -Dcrypto.res=<path to res/>");
+  }
+}
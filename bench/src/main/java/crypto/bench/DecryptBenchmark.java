@@ -0,0 +1,101 @@
+package crypto.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crypto.Decrypt;
+import crypto.Encrypt;
+import crypto.XorCracker;
+
+/**
+ * Throughput of the linear methods of {@link Decrypt} and of the repeating key
+ * XOR break of {@link XorCracker}, from 1 KB to 100 MB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class DecryptBenchmark {
+
+  @Param({ "1024", "1048576", "104857600" })
+  int size;
+
+  @Param({ "long_text.txt" })
+  String corpus;
+
+  byte[] caesarCipher;
+  float[] frequencies;
+  byte[] cbcCipher;
+  byte[] iv;
+  byte[] xorCipher;
+  byte[] ctrCipher;
+
+  @Setup
+  public void setup() {
+    byte[] plainText = Corpus.load(corpus, size);
+    caesarCipher = Encrypt.caesar(plainText, (byte) -67);
+    frequencies = Decrypt.computeFrequencies(caesarCipher);
+    iv = Encrypt.generatePad(16);
+    cbcCipher = Encrypt.cbc(plainText, iv);
+    ctrCipher = Encrypt.ctr(plainText, iv);
+    xorCipher = Encrypt.xor(plainText, Encrypt.generatePad(23));
+  }
+
+  @Benchmark
+  public float[] computeFrequencies() {
+    return Decrypt.computeFrequencies(caesarCipher);
+  }
+
+  @Benchmark
+  public byte caesarFindKey() {
+    return Decrypt.caesarFindKey(frequencies);
+  }
+
+  @Benchmark
+  public byte caesarWithFrequencies() {
+    return Decrypt.caesarWithFrequencies(caesarCipher);
+  }
+
+  @Benchmark
+  public byte caesarWithFrequenciesSampled() {
+    return Decrypt.caesarWithFrequencies(caesarCipher, Decrypt.CAESAR_CONFIDENCE);
+  }
+
+  @Benchmark
+  public byte[] decryptCBC() {
+    return Decrypt.decryptCBC(cbcCipher, iv);
+  }
+
+  @Benchmark
+  public byte[] decryptCTR() {
+    return Decrypt.decryptCTR(ctrCipher, iv);
+  }
+
+  @Benchmark
+  public byte[] decryptCTRParallel() {
+    return Decrypt.decryptCTRParallel(ctrCipher, iv);
+  }
+
+  @Benchmark
+  public int xorFindKeySize() {
+    return XorCracker.findKeySize(xorCipher, XorCracker.DEFAULT_MAX_KEY_SIZE);
+  }
+
+  @Benchmark
+  public byte[] xorCrack() {
+    return XorCracker.crack(xorCipher);
+  }
+}
@@ -0,0 +1,99 @@
+package crypto.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crypto.Encrypt;
+import crypto.Helper;
+import crypto.ParallelEncrypt;
+
+/**
+ * Throughput of every encoding method of {@link Encrypt}, from 1 KB to 100 MB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class EncryptBenchmark {
+
+  @Param({ "1024", "1048576", "104857600" })
+  int size;
+
+  @Param({ "long_text.txt" })
+  String corpus;
+
+  byte[] plainText;
+  String message;
+  byte[] keyword;
+  byte[] pad;
+  byte[] iv;
+  String key;
+
+  @Setup
+  public void setup() {
+    plainText = Corpus.load(corpus, size);
+    message = Helper.bytesToString(plainText);
+    keyword = new byte[] { 12, -34, 125, 89, -45 };
+    pad = Encrypt.generatePad(size);
+    iv = Encrypt.generatePad(16);
+    key = Helper.bytesToString(keyword);
+  }
+
+  @Benchmark
+  public String cleanString() {
+    return Helper.cleanString(message);
+  }
+
+  @Benchmark
+  public byte[] caesar() {
+    return Encrypt.caesar(plainText, (byte) 50);
+  }
+
+  @Benchmark
+  public byte[] xor() {
+    return Encrypt.xor(plainText, (byte) 50);
+  }
+
+  @Benchmark
+  public byte[] vigenere() {
+    return Encrypt.vigenere(plainText, keyword);
+  }
+
+  @Benchmark
+  public byte[] oneTimePad() {
+    return Encrypt.oneTimePad(plainText, pad);
+  }
+
+  @Benchmark
+  public byte[] cbc() {
+    return Encrypt.cbc(plainText, iv);
+  }
+
+  @Benchmark
+  public byte[] ctr() {
+    return Encrypt.ctr(plainText, iv);
+  }
+
+  @Benchmark
+  public byte[] ctrParallel() {
+    return ParallelEncrypt.encrypt(plainText, iv, Encrypt.CTR);
+  }
+
+  @Benchmark
+  public String encryptVigenereString() {
+    return Encrypt.encrypt(message, key, Encrypt.VIGENERE);
+  }
+}
@@ -0,0 +1,90 @@
+package crypto.bench;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crypto.BruteForce;
+import crypto.Decrypt;
+import crypto.EnglishScorer;
+import crypto.Encrypt;
+import crypto.NGramScorer;
+
+/**
+ * Candidates scored per second by {@link EnglishScorer} and
+ * {@link NGramScorer}, alone and inside a brute force search of the 256 XOR
+ * keys, and the brute force itself : every key decoded by
+ * {@link Decrypt#xorBruteForce(byte[])} against the keys pruned on a prefix by
+ * {@link BruteForce#candidates(byte[], int)}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScorerBenchmark {
+
+  @Param({ "16", "64", "1024" })
+  int size;
+
+  @Param({ "long_text.txt" })
+  String corpus;
+
+  byte[] candidate;
+  byte[] cipher;
+  NGramScorer ngrams;
+
+  @Setup
+  public void setup() throws IOException {
+    candidate = Corpus.load(corpus, size);
+    cipher = Encrypt.xor(candidate, (byte) 77, false);
+    ngrams = NGramScorer.load(Corpus.file(NGramScorer.ENGLISH_FILE));
+  }
+
+  @Benchmark
+  public double englishScore() {
+    return EnglishScorer.INSTANCE.score(candidate, 0, candidate.length);
+  }
+
+  @Benchmark
+  public double ngramScore() {
+    return ngrams.score(candidate, 0, candidate.length);
+  }
+
+  @Benchmark
+  public BruteForce.Candidate[] xorSearchEnglish() {
+    return BruteForce.search(cipher, Encrypt.XOR, 1, EnglishScorer.INSTANCE);
+  }
+
+  @Benchmark
+  public BruteForce.Candidate[] xorSearchNGrams() {
+    return BruteForce.search(cipher, Encrypt.XOR, 1, ngrams);
+  }
+
+  @Benchmark
+  public byte[][] xorBruteForce() {
+    return Decrypt.xorBruteForce(cipher);
+  }
+
+  @Benchmark
+  public int xorPrunedCandidates() {
+    int length = 0;
+    for (Iterator<BruteForce.Candidate> it = BruteForce.candidates(cipher, Encrypt.XOR); it.hasNext();) {
+      length += it.next().getPlainText().length;
+    }
+    return length;
+  }
+}
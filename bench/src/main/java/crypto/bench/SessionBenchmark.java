@@ -0,0 +1,83 @@
+package crypto.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import crypto.CipherSession;
+import crypto.Encrypt;
+import crypto.Helper;
+
+/**
+ * Short messages encoded one by one with the same key, through
+ * {@link Encrypt#encrypt(String, String, int)} and through a
+ * {@link CipherSession} shared by all the benchmark threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class SessionBenchmark {
+
+  @Param({ "32", "256" })
+  int size;
+
+  @Param({ "0", "1", "2", "4" })
+  int type;
+
+  String message;
+  byte[] messageBytes;
+  String key;
+  CipherSession session;
+
+  @Setup
+  public void setup() {
+    messageBytes = Corpus.load("long_text.txt", size);
+    message = Helper.bytesToString(messageBytes);
+    key = (type == Encrypt.CAESAR || type == Encrypt.XOR) ? "2" : "key";
+    session = new CipherSession(type, key);
+  }
+
+  /**
+   * Destination array of each benchmark thread
+   */
+  @State(Scope.Thread)
+  public static class Output {
+    byte[] bytes;
+
+    @Setup
+    public void setup(SessionBenchmark benchmark) {
+      bytes = new byte[benchmark.size];
+    }
+  }
+
+  @Benchmark
+  public String encryptString() {
+    return Encrypt.encrypt(message, key, type);
+  }
+
+  @Benchmark
+  public String sessionString() {
+    return session.encrypt(message);
+  }
+
+  @Benchmark
+  public byte[] sessionBytes(Output output) {
+    session.encrypt(messageBytes, 0, output.bytes, 0, messageBytes.length);
+    return output.bytes;
+  }
+}
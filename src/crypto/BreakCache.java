@@ -0,0 +1,239 @@
+package crypto;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded cache of the keys found by {@link Decrypt#breakCipher(String, int,
+ * BreakCache)}, so that a cipher text already broken (retried message, replayed
+ * archive) only costs a digest and a decoding instead of a whole frequency
+ * analysis.
+ *
+ * Entries are looked up with a 128 bit digest of the cipher text and of the
+ * method, computed in a single pass over the bytes. The digest is not
+ * cryptographic : it only has to make accidental collisions negligible. The key
+ * is stored rather than the clear text, so an entry weighs a few dozen bytes
+ * whatever the length of the message.
+ *
+ * The least recently used entries are evicted once there are more than
+ * maxEntries of them or once their total weight exceeds maxWeight. The cache
+ * can be used by several threads at once : the lookups are synchronized, the
+ * breaking itself is not.
+ */
+public final class BreakCache {
+
+  private static final int ENTRY_OVERHEAD = 64; // approximate size of an entry without its key, in bytes
+
+  private static final long PRIME_1 = 0x9E3779B97F4A7C15L;
+  private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+      ByteOrder.LITTLE_ENDIAN);
+
+  private final int maxEntries;
+  private final long maxWeight;
+  private final LinkedHashMap<Digest, byte[]> entries = new LinkedHashMap<Digest, byte[]>(16, 0.75f, true);
+
+  private long weight = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  /**
+   * Creates a cache keeping at most a given number of keys
+   *
+   * @param maxEntries the maximum number of keys kept
+   */
+  public BreakCache(int maxEntries) {
+    this(maxEntries, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a cache bounded by its number of keys and by their weight
+   *
+   * @param maxEntries the maximum number of keys kept
+   * @param maxWeight  the maximum approximate memory used by the entries, in
+   *                   bytes
+   */
+  public BreakCache(int maxEntries, long maxWeight) {
+    assert maxEntries > 0;
+    assert maxWeight > 0;
+
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Looks for the key of a cipher text already broken
+   *
+   * @param cipher the byte array representing the encoded text
+   * @param type   the method used to encode
+   * @return the key found the last time, or null
+   */
+  public byte[] get(byte[] cipher, int type) {
+    Digest digest = Digest.of(cipher, type);
+    synchronized (this) {
+      byte[] key = entries.get(digest);
+      if (key == null) {
+        ++misses;
+        return null;
+      }
+      ++hits;
+      return key.clone();
+    }
+  }
+
+  /**
+   * Remembers the key of a cipher text
+   *
+   * @param cipher the byte array representing the encoded text
+   * @param type   the method used to encode
+   * @param key    the key found
+   */
+  public void put(byte[] cipher, int type, byte[] key) {
+    assert key != null;
+
+    Digest digest = Digest.of(cipher, type);
+    byte[] copy = key.clone();
+    synchronized (this) {
+      byte[] previous = entries.put(digest, copy);
+      if (previous != null) {
+        weight -= weight(previous);
+      }
+      weight += weight(copy);
+      Iterator<byte[]> eldest = entries.values().iterator();
+      while (entries.size() > maxEntries || (weight > maxWeight && entries.size() > 1)) {
+        weight -= weight(eldest.next());
+        eldest.remove();
+        ++evictions;
+      }
+    }
+  }
+
+  /**
+   * Removes all the entries, the statistics are kept
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /**
+   * @return the number of keys in the cache
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the approximate memory used by the entries, in bytes
+   */
+  public synchronized long weight() {
+    return weight;
+  }
+
+  /**
+   * @return the number of lookups that found a key
+   */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that found nothing
+   */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of entries removed to respect the bounds
+   */
+  public synchronized long evictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the proportion of lookups that found a key, 0 before any lookup
+   */
+  public synchronized double hitRate() {
+    long lookups = hits + misses;
+    return (lookups == 0) ? 0 : (double) hits / lookups;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "BreakCache[entries=" + entries.size() + ", weight=" + weight + ", hits=" + hits + ", misses=" + misses
+        + ", evictions=" + evictions + "]";
+  }
+
+  private static long weight(byte[] key) {
+    return ENTRY_OVERHEAD + key.length;
+  }
+
+  /**
+   * 128 bit digest of a cipher text and of its method
+   */
+  private static final class Digest {
+    private final long high;
+    private final long low;
+
+    private Digest(long high, long low) {
+      this.high = high;
+      this.low = low;
+    }
+
+    /**
+     * Reads the cipher 8 bytes at a time in two independent lanes, then mixes in
+     * the length and the method
+     */
+    static Digest of(byte[] cipher, int type) {
+      assert cipher != null;
+
+      long h1 = PRIME_1 ^ type;
+      long h2 = PRIME_2 + type;
+      int i = 0;
+      for (; i + Long.BYTES <= cipher.length; i += Long.BYTES) {
+        long word = (long) LONGS.get(cipher, i);
+        h1 = Long.rotateLeft(h1 ^ word * PRIME_2, 31) * PRIME_1;
+        h2 = Long.rotateLeft(h2 + word * PRIME_1, 27) * PRIME_2 ^ h1;
+      }
+      long tail = 0;
+      for (int shift = 0; i < cipher.length; ++i, shift += Byte.SIZE) {
+        tail |= (cipher[i] & 0xFFL) << shift;
+      }
+      h1 = mix(h1 ^ tail * PRIME_2 ^ cipher.length);
+      h2 = mix(h2 + tail * PRIME_1 + h1);
+      return new Digest(h1, h2);
+    }
+
+    /**
+     * Final mixing of MurmurHash3, every bit of the input changes about half of
+     * the bits of the output
+     */
+    private static long mix(long h) {
+      h ^= h >>> 33;
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= h >>> 33;
+      h *= 0xC4CEB9FE1A85EC53L;
+      h ^= h >>> 33;
+      return h;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Digest)) {
+        return false;
+      }
+      Digest digest = (Digest) other;
+      return high == digest.high && low == digest.low;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (high ^ (high >>> 32));
+    }
+  }
+}
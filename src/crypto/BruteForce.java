@@ -0,0 +1,367 @@
+package crypto;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Brute force search over the 256 keys of Caesar and XOR that ranks the
+ * candidates instead of returning all of them. The keys are split between the
+ * threads of a ForkJoinPool, every candidate is scored as soon as it is decoded
+ * in a buffer reused for the whole range of keys, and only the best candidates
+ * are copied and kept.
+ *
+ * {@link #candidates(byte[], int)} goes the other way : the keys are tried
+ * lazily, one after the other, and a key is dropped as soon as the beginning of
+ * its clear text goes out of the expected alphabet, so only the surviving keys
+ * cost a whole decoding.
+ */
+public class BruteForce {
+
+  public static final int PREFIX_LENGTH = 16; // bytes decoded to decide whether a key is kept
+
+  private static final int KEYS_PER_TASK = 16; // number of keys tried by a task without splitting
+
+  /**
+   * The bytes a clear text can be made of
+   */
+  public enum Alphabet {
+    /**
+     * Lower case letters and spaces, as produced by
+     * {@link Helper#cleanString(String)}
+     */
+    CLEANED,
+
+    /**
+     * Printable ASCII characters, tabulations and line breaks
+     */
+    PRINTABLE;
+
+    private final boolean[] accepted = new boolean[Decrypt.ALPHABETSIZE];
+
+    static {
+      for (int b = 'a'; b <= 'z'; ++b) {
+        CLEANED.accepted[b] = true;
+      }
+      CLEANED.accepted[Decrypt.SPACE] = true;
+      for (int b = ' '; b <= '~'; ++b) {
+        PRINTABLE.accepted[b] = true;
+      }
+      PRINTABLE.accepted['\t'] = true;
+      PRINTABLE.accepted['\n'] = true;
+      PRINTABLE.accepted['\r'] = true;
+    }
+
+    /**
+     * @param b a byte of clear text
+     * @return true if the byte belongs to the alphabet
+     */
+    public boolean accepts(byte b) {
+      return accepted[b & 0xFF];
+    }
+  }
+
+  /**
+   * A possible key with its clear text and score
+   */
+  public static final class Candidate {
+    private final byte key;
+    private final double score;
+    private final byte[] plainText;
+
+    Candidate(byte key, double score, byte[] plainText) {
+      this.key = key;
+      this.score = score;
+      this.plainText = plainText;
+    }
+
+    /**
+     * @return the key that was used to encode the message
+     */
+    public byte getKey() {
+      return key;
+    }
+
+    /**
+     * @return the score of the clear text, the higher the better
+     */
+    public double getScore() {
+      return score;
+    }
+
+    /**
+     * @return the clear text obtained with this key
+     */
+    public byte[] getPlainText() {
+      return plainText;
+    }
+  }
+
+  /**
+   * Finds the most likely keys of a Caesar cipher text, scored with the English
+   * bigrams and quadgrams of {@link NGramScorer#english()}
+   *
+   * @param cipher the byte array representing the encoded text
+   * @param count  the number of candidates to return
+   * @return the best candidates, the best one first
+   */
+  public static Candidate[] caesar(byte[] cipher, int count) {
+    return search(cipher, Encrypt.CAESAR, count, NGramScorer.english());
+  }
+
+  /**
+   * Finds the most likely keys of a XOR cipher text, scored with the English
+   * bigrams and quadgrams of {@link NGramScorer#english()}
+   *
+   * @param cipher the byte array representing the encoded text
+   * @param count  the number of candidates to return
+   * @return the best candidates, the best one first
+   */
+  public static Candidate[] xor(byte[] cipher, int count) {
+    return search(cipher, Encrypt.XOR, count, NGramScorer.english());
+  }
+
+  /**
+   * Tries all the keys of a Caesar or XOR cipher text on the common pool
+   *
+   * @param cipher the byte array representing the encoded text
+   * @param type   the method used to encode : 0 = Caesar, 2 = XOR
+   * @param count  the number of candidates to return
+   * @param scorer the scorer used to rank the clear texts
+   * @return the best candidates, the best one first
+   */
+  public static Candidate[] search(byte[] cipher, int type, int count, PlaintextScorer scorer) {
+    return search(cipher, type, count, scorer, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Tries all the keys of a Caesar or XOR cipher text
+   *
+   * @param cipher the byte array representing the encoded text
+   * @param type   the method used to encode : 0 = Caesar, 2 = XOR
+   * @param count  the number of candidates to return
+   * @param scorer the scorer used to rank the clear texts
+   * @param pool   the pool running the search
+   * @return the best candidates, the best one first
+   */
+  public static Candidate[] search(byte[] cipher, int type, int count, PlaintextScorer scorer, ForkJoinPool pool) {
+    assert cipher != null;
+    assert cipher.length != 0;
+    assert type == Encrypt.CAESAR || type == Encrypt.XOR;
+    assert count > 0;
+    assert scorer != null;
+
+    List<Candidate> best = pool
+        .invoke(new KeyRange(cipher, type, Math.min(count, Decrypt.ALPHABETSIZE), scorer, 0, Decrypt.ALPHABETSIZE));
+    return best.toArray(new Candidate[0]);
+  }
+
+  /**
+   * Tries lazily the keys of a Caesar or XOR cipher text, keeping the ones
+   * giving a clear text made of lower case letters and spaces, see
+   * {@link #candidates(byte[], int, Alphabet, int)}
+   *
+   * @param cipher the byte array representing the encoded text
+   * @param type   the method used to encode : 0 = Caesar, 2 = XOR
+   * @return the candidates, from the key -128 to the key 127
+   */
+  public static Iterator<Candidate> candidates(byte[] cipher, int type) {
+    return candidates(cipher, type, Alphabet.CLEANED, PREFIX_LENGTH);
+  }
+
+  /**
+   * Tries lazily the keys of a Caesar or XOR cipher text. Looking for the next
+   * candidate only decodes the first bytes of the text with every key until one
+   * gives bytes of the alphabet, and the whole text is decoded only when the
+   * candidate is returned, so stopping early costs nothing for the keys left.
+   * The candidates are not scored, their score is NaN.
+   *
+   * @param cipher the byte array representing the encoded text
+   * @param type   the method used to encode : 0 = Caesar, 2 = XOR
+   * @param alphabet the bytes the clear text is made of
+   * @param prefix the number of bytes checked before decoding the whole text
+   * @return the candidates, from the key -128 to the key 127
+   */
+  public static Iterator<Candidate> candidates(byte[] cipher, int type, Alphabet alphabet, int prefix) {
+    assert cipher != null;
+    assert type == Encrypt.CAESAR || type == Encrypt.XOR;
+    assert alphabet != null;
+    assert prefix > 0;
+
+    return new PrunedKeys(cipher, type, alphabet, Math.min(prefix, cipher.length));
+  }
+
+  /**
+   * Same as {@link #candidates(byte[], int, Alphabet, int)} as a sequential
+   * stream, ex : candidates(cipher, type, alphabet, prefix).findFirst()
+   *
+   * @param cipher   the byte array representing the encoded text
+   * @param type     the method used to encode : 0 = Caesar, 2 = XOR
+   * @param alphabet the bytes the clear text is made of
+   * @param prefix   the number of bytes checked before decoding the whole text
+   * @return the candidates, from the key -128 to the key 127
+   */
+  public static Stream<Candidate> stream(byte[] cipher, int type, Alphabet alphabet, int prefix) {
+    Iterator<Candidate> candidates = candidates(cipher, type, alphabet, prefix);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(candidates,
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Inserts a candidate in a list sorted from the best to the worst, keeping at
+   * most count candidates
+   *
+   * @return true if the candidate was kept
+   */
+  private static boolean insert(List<Candidate> best, Candidate candidate, int count) {
+    int index = best.size();
+    while (index > 0 && isBetter(candidate, best.get(index - 1))) {
+      --index;
+    }
+    if (index >= count) {
+      return false;
+    }
+    best.add(index, candidate);
+    if (best.size() > count) {
+      best.remove(best.size() - 1);
+    }
+    return true;
+  }
+
+  private static boolean isBetter(Candidate a, Candidate b) {
+    return a.score > b.score || (a.score == b.score && a.key < b.key);
+  }
+
+  /**
+   * Iterator over the keys whose prefix stays in the alphabet
+   */
+  private static final class PrunedKeys implements Iterator<Candidate> {
+    private final byte[] cipher;
+    private final int type;
+    private final Alphabet alphabet;
+    private final int prefix;
+    private int next = 0; // index of the next key to try, from 0 to 256
+    private boolean found = false; // true if the key at next survived and was not returned yet
+
+    PrunedKeys(byte[] cipher, int type, Alphabet alphabet, int prefix) {
+      this.cipher = cipher;
+      this.type = type;
+      this.alphabet = alphabet;
+      this.prefix = prefix;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!found && next < Decrypt.ALPHABETSIZE) {
+        if (survives((byte) (Encrypt.LOWER_BOUND + next))) {
+          found = true;
+        } else {
+          ++next;
+        }
+      }
+      return found;
+    }
+
+    @Override
+    public Candidate next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      byte key = (byte) (Encrypt.LOWER_BOUND + next);
+      byte[] plainText = new byte[cipher.length];
+      decode(key, plainText, cipher.length);
+      found = false;
+      ++next;
+      return new Candidate(key, Double.NaN, plainText);
+    }
+
+    /**
+     * Decodes the prefix byte after byte, and stops at the first byte out of the
+     * alphabet
+     */
+    private boolean survives(byte key) {
+      for (int i = 0; i < prefix; ++i) {
+        byte c = cipher[i];
+        byte decoded;
+        if (c == Decrypt.SPACE) { // spaces are not encoded
+          decoded = c;
+        } else {
+          decoded = (type == Encrypt.CAESAR) ? (byte) (c - key) : (byte) (c ^ key);
+        }
+        if (!alphabet.accepts(decoded)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void decode(byte key, byte[] plainText, int length) {
+      if (type == Encrypt.CAESAR) { // decoded with the opposite shift, as in search
+        Encrypt.caesar(cipher, 0, plainText, 0, length, (byte) -key, false);
+      } else {
+        Encrypt.xor(cipher, 0, plainText, 0, length, key, false);
+      }
+    }
+  }
+
+  /**
+   * Task trying a range of keys, splitting it in two halves while it is too
+   * large
+   */
+  private static class KeyRange extends RecursiveTask<List<Candidate>> {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] cipher;
+    private final int type;
+    private final int count;
+    private final PlaintextScorer scorer;
+    private final int from;
+    private final int to;
+
+    KeyRange(byte[] cipher, int type, int count, PlaintextScorer scorer, int from, int to) {
+      this.cipher = cipher;
+      this.type = type;
+      this.count = count;
+      this.scorer = scorer;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected List<Candidate> compute() {
+      if (to - from > KEYS_PER_TASK) {
+        int middle = (from + to) >>> 1;
+        KeyRange left = new KeyRange(cipher, type, count, scorer, from, middle);
+        left.fork();
+        List<Candidate> best = new KeyRange(cipher, type, count, scorer, middle, to).compute();
+        for (Candidate candidate : left.join()) {
+          insert(best, candidate, count);
+        }
+        return best;
+      }
+
+      List<Candidate> best = new ArrayList<Candidate>(count + 1);
+      byte[] buffer = new byte[cipher.length]; // reused for every key of the range
+      for (int i = from; i < to; ++i) {
+        byte key = (byte) (Encrypt.LOWER_BOUND + i);
+        if (type == Encrypt.CAESAR) { // decoded with the opposite shift, spaces are not decoded
+          Encrypt.caesar(cipher, 0, buffer, 0, cipher.length, (byte) -key, false);
+        } else {
+          Encrypt.xor(cipher, 0, buffer, 0, cipher.length, key, false);
+        }
+        double score = scorer.score(buffer, 0, buffer.length);
+        if (best.size() < count || score > best.get(best.size() - 1).score) {
+          insert(best, new Candidate(key, score, buffer.clone()), count);
+        }
+      }
+      return best;
+    }
+  }
+}
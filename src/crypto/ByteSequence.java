@@ -0,0 +1,272 @@
+package crypto;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable sequence of primitive bytes, used instead of a List<Byte> to keep one
+ * byte of heap per byte of text. A sequence can also be a view on another one:
+ * a range ({@link #view(int, int)}) or every n-th byte ({@link #strided(int,
+ * int)}, the bytes encoded with the same letter of a Vigenere key). Views share
+ * the bytes of the sequence they come from and can't grow.
+ */
+public final class ByteSequence {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private byte[] data;
+  private final int offset; // index in data of the first byte
+  private final int stride; // distance in data between two bytes of the sequence
+  private int size;
+  private final boolean view;
+
+  /**
+   * Creates an empty sequence
+   */
+  public ByteSequence() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates an empty sequence that can hold a given number of bytes without
+   * growing
+   *
+   * @param capacity the initial capacity
+   */
+  public ByteSequence(int capacity) {
+    this(new byte[Math.max(capacity, 1)], 0, 1, 0, false);
+  }
+
+  private ByteSequence(byte[] data, int offset, int stride, int size, boolean view) {
+    this.data = data;
+    this.offset = offset;
+    this.stride = stride;
+    this.size = size;
+    this.view = view;
+  }
+
+  /**
+   * Copies a byte array in a new sequence
+   *
+   * @param bytes the bytes to copy
+   * @return the sequence
+   */
+  public static ByteSequence of(byte[] bytes) {
+    assert bytes != null;
+
+    ByteSequence sequence = new ByteSequence(bytes.length);
+    sequence.addAll(bytes, 0, bytes.length);
+    return sequence;
+  }
+
+  /**
+   * Copies a list of bytes in a new sequence
+   *
+   * @param bytes the bytes to copy
+   * @return the sequence
+   */
+  public static ByteSequence of(List<Byte> bytes) {
+    assert bytes != null;
+
+    ByteSequence sequence = new ByteSequence(bytes.size());
+    for (Byte b : bytes) {
+      sequence.add(b);
+    }
+    return sequence;
+  }
+
+  /**
+   * Copies the bytes of an array that are not spaces in a new sequence, see
+   * {@link Decrypt#removeSpaces(byte[])}
+   *
+   * @param text the bytes to copy
+   * @return the sequence without spaces
+   */
+  public static ByteSequence withoutSpaces(byte[] text) {
+    assert text != null;
+
+    return withoutSpaces(text, 0, text.length);
+  }
+
+  /**
+   * Copies the bytes of a part of an array that are not spaces in a new sequence
+   *
+   * @param text   the bytes to copy
+   * @param from   the index of the first byte to copy
+   * @param length the number of bytes to look at
+   * @return the sequence without spaces
+   */
+  public static ByteSequence withoutSpaces(byte[] text, int from, int length) {
+    assert text != null;
+    assert from >= 0 && length >= 0 && from + length <= text.length;
+
+    ByteSequence sequence = new ByteSequence(length);
+    byte[] data = sequence.data;
+    int size = 0;
+    for (int i = from; i < from + length; ++i) {
+      if (text[i] != Decrypt.SPACE) {
+        data[size++] = text[i];
+      }
+    }
+    sequence.size = size;
+    return sequence;
+  }
+
+  /**
+   * @return the number of bytes in the sequence
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if the sequence has no byte
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param index the index of the byte, from 0 to size() - 1
+   * @return the byte at this index
+   */
+  public byte get(int index) {
+    assert index >= 0 && index < size;
+
+    return data[offset + index * stride];
+  }
+
+  /**
+   * Adds a byte at the end of the sequence
+   *
+   * @param b the byte to add
+   */
+  public void add(byte b) {
+    ensureCapacity(size + 1);
+    data[size++] = b;
+  }
+
+  /**
+   * Adds a part of a byte array at the end of the sequence
+   *
+   * @param bytes  the bytes to add
+   * @param from   the index of the first byte to add
+   * @param length the number of bytes to add
+   */
+  public void addAll(byte[] bytes, int from, int length) {
+    assert bytes != null;
+    assert from >= 0 && length >= 0 && from + length <= bytes.length;
+
+    ensureCapacity(size + length);
+    System.arraycopy(bytes, from, data, size, length);
+    size += length;
+  }
+
+  /**
+   * Gives the bytes from one index (included) to another (excluded) without
+   * copying them
+   *
+   * @param from the index of the first byte of the view
+   * @param to   the index after the last byte of the view
+   * @return the view
+   */
+  public ByteSequence view(int from, int to) {
+    assert from >= 0 && from <= to && to <= size;
+
+    return new ByteSequence(data, offset + from * stride, stride, to - from, true);
+  }
+
+  /**
+   * Gives the bytes at start, start + step, start + 2 * step... without copying
+   * them
+   *
+   * @param start the index of the first byte of the view
+   * @param step  the distance between two bytes of the view
+   * @return the view
+   */
+  public ByteSequence strided(int start, int step) {
+    assert start >= 0;
+    assert step > 0;
+
+    int count = (start < size) ? (size - start + step - 1) / step : 0;
+    return new ByteSequence(data, offset + start * stride, stride * step, count, true);
+  }
+
+  /**
+   * Copies the bytes of the sequence in a byte array
+   *
+   * @param dst    the array receiving the bytes
+   * @param dstOff the index in dst of the first byte
+   */
+  public void copyTo(byte[] dst, int dstOff) {
+    assert dst != null;
+    assert dstOff >= 0 && dstOff + size <= dst.length;
+
+    if (stride == 1) {
+      System.arraycopy(data, offset, dst, dstOff, size);
+      return;
+    }
+    for (int i = 0, j = offset; i < size; ++i, j += stride) {
+      dst[dstOff + i] = data[j];
+    }
+  }
+
+  /**
+   * @return a copy of the bytes of the sequence
+   */
+  public byte[] toArray() {
+    byte[] array = new byte[size];
+    copyTo(array, 0);
+    return array;
+  }
+
+  /**
+   * Gives a List<Byte> backed by this sequence, for the methods that still take
+   * boxed bytes. The list can't be modified.
+   *
+   * @return the list view
+   */
+  public List<Byte> asList() {
+    return new AbstractList<Byte>() {
+      @Override
+      public Byte get(int index) {
+        if (index < 0 || index >= size) {
+          throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return ByteSequence.this.get(index);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Adds the bytes of the sequence to a histogram
+   *
+   * @param histogram the histogram counting the bytes
+   */
+  public void countInto(FrequencyHistogram histogram) {
+    assert histogram != null;
+
+    if (stride == 1) {
+      histogram.addAll(data, offset, size);
+      return;
+    }
+    for (int i = 0, j = offset; i < size; ++i, j += stride) {
+      histogram.add(data[j]);
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (view) {
+      throw new UnsupportedOperationException("A view can't grow");
+    }
+    if (capacity > data.length) {
+      data = Arrays.copyOf(data, Math.max(capacity, data.length + (data.length >> 1)));
+    }
+  }
+}
@@ -0,0 +1,569 @@
+package crypto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32C;
+
+/**
+ * File format for encoded data that describes itself : a reader only needs the
+ * key, and can check, decode and skip every chunk on its own.
+ *
+ * <pre>
+ * header : magic, version, type, key length, chunk size, size, chunk count,
+ *          nonce length, nonce, CRC32C of the header
+ * chunks : the encoded data, cut in chunks of chunk size bytes (the last one
+ *          can be shorter)
+ * index  : for every chunk, its offset in the file, its length and the CRC32C
+ *          of its encoded bytes
+ * footer : offset of the index, chunk count, CRC32C of the index, magic
+ * </pre>
+ *
+ * All numbers are big endian. The footer has a fixed size, so the index is
+ * found from the end of the file without reading the chunks, and the checksums
+ * are those of the encoded bytes, so the integrity is checked without the key.
+ *
+ * Every chunk is encoded as if it were a message of its own, so the chunks are
+ * encoded and decoded in parallel and in any order : Caesar, Vigenere and XOR
+ * start every chunk from the beginning of their key and encode the spaces too
+ * (the data is not necessarily text), the one time pad reads the pad at the
+ * offset of the chunk. CBC and CTR use an IV made of the key XORed with a
+ * random nonce stored in the header : CTR reads one stream at the offset of the
+ * chunk, CBC starts every chunk from the IV with the number of the chunk added
+ * as a counter (see {@link Encrypt#ctr(byte[], byte[])}). The nonce only makes
+ * two files encoded with the same key look different, it adds no secrecy : it
+ * is stored in clear and the stream is linear in the IV, so XORing two such
+ * files and their nonces still gives the XOR of their clear data.
+ *
+ * The checksums are computed with {@link CRC32C}, which the JIT compiles to the
+ * CRC instructions of the processor : checking a chunk costs much less than
+ * decoding it.
+ */
+public final class CipherContainer implements Closeable {
+
+  public static final int MAGIC = 0x43525950; // "CRYP"
+  public static final short VERSION = 1;
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20; // 1 MiB
+
+  // magic, version, type, key length, chunk size, size, chunk count, nonce length, before the nonce
+  private static final int HEADER_BYTES = Integer.BYTES + Short.BYTES + Byte.BYTES + 3 * Integer.BYTES
+      + Long.BYTES + Short.BYTES;
+  private static final int INDEX_ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES; // offset, length, checksum
+  private static final int FOOTER_BYTES = Long.BYTES + 3 * Integer.BYTES; // index offset, count, checksum, magic
+  private static final int MAX_NONCE_LENGTH = 0xFFFF; // stored as an unsigned short
+
+  private final FileChannel channel;
+  private final int type;
+  private final int keyLength;
+  private final int chunkSize;
+  private final long size;
+  private final byte[] nonce;
+  private final long[] offsets;
+  private final int[] lengths;
+  private final int[] checksums;
+
+  private CipherContainer(FileChannel channel, int type, int keyLength, int chunkSize, long size, byte[] nonce,
+      long[] offsets, int[] lengths, int[] checksums) {
+    this.channel = channel;
+    this.type = type;
+    this.keyLength = keyLength;
+    this.chunkSize = chunkSize;
+    this.size = size;
+    this.nonce = nonce;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.checksums = checksums;
+  }
+
+  // -----------------------Writing-------------------------
+
+  /**
+   * Encodes data into a container file with chunks of DEFAULT_CHUNK_SIZE bytes,
+   * on the common pool
+   *
+   * @param file the file to write, replaced if it exists
+   * @param data the bytes to encode
+   * @param key  the key used to encode (the whole pad for the one time pad)
+   * @param type the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3
+   *             = One time pad, 4 = CBC, 5 = CTR
+   * @return the size of the file
+   * @throws IOException if the file can't be written
+   */
+  public static long write(Path file, byte[] data, byte[] key, int type) throws IOException {
+    return write(file, data, key, type, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Encodes data into a container file, the chunks being encoded and checksummed
+   * by the threads of an executor
+   *
+   * @param file      the file to write, replaced if it exists
+   * @param data      the bytes to encode
+   * @param key       the key used to encode (the whole pad for the one time pad)
+   * @param type      the method used to encode : 0 = Caesar, 1 = Vigenere, 2 =
+   *                  XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @param chunkSize the number of bytes of every chunk
+   * @param executor  the executor encoding the chunks
+   * @return the size of the file
+   * @throws IOException              if the file can't be written
+   * @throws IllegalArgumentException if the key of CBC or CTR is longer than
+   *                                  65535 bytes, the length of its nonce
+   */
+  public static long write(Path file, byte[] data, byte[] key, int type, int chunkSize, ExecutorService executor)
+      throws IOException {
+    assert data != null;
+    assert key != null && key.length != 0;
+    assert type >= Encrypt.CAESAR && type <= Encrypt.CTR;
+    assert type != Encrypt.ONETIME || key.length >= data.length;
+    assert chunkSize > 0;
+    assert executor != null;
+
+    int nonceLength = nonceLength(type, key.length);
+    if (nonceLength > MAX_NONCE_LENGTH) {
+      throw new IllegalArgumentException("The key has " + key.length + " bytes, at most " + MAX_NONCE_LENGTH
+          + " bytes fit in the header for CBC and CTR");
+    }
+
+    long start = Metrics.start();
+    byte[] nonce = (nonceLength == 0) ? new byte[0] : Encrypt.generatePad(nonceLength);
+    byte[] iv = iv(key, nonce);
+    int chunks = (data.length + chunkSize - 1) / chunkSize;
+    byte[] header = header(type, key.length, chunkSize, data.length, chunks, nonce);
+
+    byte[] encoded = new byte[data.length];
+    int[] checksums = new int[chunks];
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+    for (int chunk = 0; chunk < chunks; ++chunk) {
+      final int index = chunk;
+      final int offset = chunk * chunkSize;
+      final int length = Math.min(chunkSize, data.length - offset);
+      tasks.add(() -> {
+        System.arraycopy(data, offset, encoded, offset, length);
+        transform(encoded, offset, length, index, offset, type, key, iv, false);
+        checksums[index] = checksum(encoded, offset, length);
+        return null;
+      });
+    }
+    ParallelEncrypt.runAll(executor, tasks);
+
+    ByteBuffer index = ByteBuffer.allocate(chunks * INDEX_ENTRY_BYTES);
+    for (int chunk = 0; chunk < chunks; ++chunk) {
+      int offset = chunk * chunkSize;
+      index.putLong(header.length + (long) offset).putInt(Math.min(chunkSize, data.length - offset))
+          .putInt(checksums[chunk]);
+    }
+    long indexOffset = header.length + (long) data.length;
+    ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+    footer.putLong(indexOffset).putInt(chunks).putInt(checksum(index.array(), 0, index.capacity())).putInt(MAGIC);
+
+    try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(out, ByteBuffer.wrap(header));
+      writeFully(out, ByteBuffer.wrap(encoded));
+      writeFully(out, index.flip());
+      writeFully(out, footer.flip());
+    }
+    long written = indexOffset + index.capacity() + FOOTER_BYTES;
+    Metrics.stop(Metrics.Operation.WRITE_FILE, type, data.length, start);
+    return written;
+  }
+
+  private static byte[] header(int type, int keyLength, int chunkSize, long size, int chunks, byte[] nonce) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + nonce.length + Integer.BYTES);
+    header.putInt(MAGIC).putShort(VERSION).put((byte) type).putInt(keyLength).putInt(chunkSize).putLong(size)
+        .putInt(chunks).putShort((short) nonce.length).put(nonce);
+    header.putInt(checksum(header.array(), 0, header.position()));
+    return header.array();
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  // -----------------------Reading-------------------------
+
+  /**
+   * Opens a container file and reads its header and its index, the chunks are
+   * only read when they are checked or decoded. The container must be closed.
+   *
+   * @param file the file to read
+   * @return the container
+   * @throws IOException if the file can't be read, is not a container, or its
+   *                     header, index or footer is corrupted
+   */
+  public static CipherContainer open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      return read(channel);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static CipherContainer read(FileChannel channel) throws IOException {
+    long fileSize = channel.size();
+    if (fileSize < HEADER_BYTES + Integer.BYTES + FOOTER_BYTES) {
+      throw new IOException("Not a container : " + fileSize + " bytes");
+    }
+    ByteBuffer fixed = readFully(channel, 0, HEADER_BYTES);
+    if (fixed.getInt() != MAGIC) {
+      throw new IOException("Not a container");
+    }
+    short version = fixed.getShort();
+    if (version != VERSION) {
+      throw new IOException("Container written by another version : " + version);
+    }
+    int type = fixed.get();
+    int keyLength = fixed.getInt();
+    int chunkSize = fixed.getInt();
+    long size = fixed.getLong();
+    int chunks = fixed.getInt();
+    int nonceLength = fixed.getShort() & 0xFFFF;
+    ByteBuffer rest = readFully(channel, HEADER_BYTES, nonceLength + Integer.BYTES);
+    byte[] nonce = new byte[nonceLength];
+    rest.get(nonce);
+    int headerLength = HEADER_BYTES + nonceLength;
+    byte[] header = Arrays.copyOf(fixed.array(), headerLength);
+    System.arraycopy(nonce, 0, header, HEADER_BYTES, nonceLength);
+    if (rest.getInt() != checksum(header, 0, headerLength)) {
+      throw new IOException("Corrupted container header");
+    }
+    if (type < Encrypt.CAESAR || type > Encrypt.CTR || keyLength <= 0 || chunkSize <= 0 || size < 0
+        || size > Integer.MAX_VALUE || chunks != (size + chunkSize - 1) / chunkSize) {
+      throw new IOException("Invalid container header");
+    }
+    if (nonceLength != nonceLength(type, keyLength)) {
+      throw new IOException("Invalid container header : nonce of " + nonceLength + " bytes for a key of "
+          + keyLength + " bytes");
+    }
+    if (type == Encrypt.ONETIME && keyLength < size) {
+      throw new IOException("Invalid container header : pad of " + keyLength + " bytes for " + size + " bytes");
+    }
+
+    ByteBuffer footer = readFully(channel, fileSize - FOOTER_BYTES, FOOTER_BYTES);
+    long indexOffset = footer.getLong();
+    int count = footer.getInt();
+    int indexChecksum = footer.getInt();
+    if (footer.getInt() != MAGIC || count != chunks
+        || indexOffset + (long) chunks * INDEX_ENTRY_BYTES != fileSize - FOOTER_BYTES) {
+      throw new IOException("Corrupted container footer");
+    }
+    ByteBuffer index = readFully(channel, indexOffset, chunks * INDEX_ENTRY_BYTES);
+    if (checksum(index.array(), 0, index.capacity()) != indexChecksum) {
+      throw new IOException("Corrupted container index");
+    }
+    long[] offsets = new long[chunks];
+    int[] lengths = new int[chunks];
+    int[] checksums = new int[chunks];
+    for (int chunk = 0; chunk < chunks; ++chunk) {
+      offsets[chunk] = index.getLong();
+      lengths[chunk] = index.getInt();
+      checksums[chunk] = index.getInt();
+      long expected = Math.min(chunkSize, size - (long) chunk * chunkSize);
+      if (lengths[chunk] != expected || offsets[chunk] < headerLength + Integer.BYTES
+          || offsets[chunk] + lengths[chunk] > indexOffset) {
+        throw new IOException("Corrupted container index at chunk " + chunk);
+      }
+    }
+    return new CipherContainer(channel, type, keyLength, chunkSize, size, nonce, offsets, lengths, checksums);
+  }
+
+  /**
+   * Reads bytes at a position of the file, the channel can be read by several
+   * threads at once
+   */
+  private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    readFully(channel, position, buffer);
+    return buffer.flip();
+  }
+
+  private static void readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+    long current = position;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, current);
+      if (read < 0) {
+        throw new IOException("Truncated container");
+      }
+      current += read;
+    }
+  }
+
+  /**
+   * @return the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3 =
+   *         One time pad, 4 = CBC, 5 = CTR
+   */
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * @return the length of the key used to encode
+   */
+  public int getKeyLength() {
+    return keyLength;
+  }
+
+  /**
+   * @return the number of bytes of every chunk but the last one
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * @return the number of chunks
+   */
+  public int getChunkCount() {
+    return offsets.length;
+  }
+
+  /**
+   * @return the number of bytes of the clear data
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * @return the random nonce mixed with the key of CBC and CTR (stored in clear,
+   *         not a secret), empty for the other methods
+   */
+  public byte[] getNonce() {
+    return nonce.clone();
+  }
+
+  /**
+   * Checks the checksum of a chunk, without the key
+   *
+   * @param chunk the number of the chunk
+   * @return true if the chunk is intact
+   * @throws IOException if the file can't be read
+   */
+  public boolean verify(int chunk) throws IOException {
+    assert chunk >= 0 && chunk < offsets.length;
+
+    ByteBuffer encoded = readFully(channel, offsets[chunk], lengths[chunk]);
+    return checksum(encoded.array(), 0, lengths[chunk]) == checksums[chunk];
+  }
+
+  /**
+   * Checks all the chunks on the common pool
+   *
+   * @return the numbers of the corrupted chunks, empty if the whole data is
+   *         intact
+   * @throws IOException if the file can't be read
+   */
+  public BitSet verify() throws IOException {
+    BitSet corrupted = new BitSet(offsets.length);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(offsets.length);
+    for (int chunk = 0; chunk < offsets.length; ++chunk) {
+      final int index = chunk;
+      tasks.add(() -> {
+        if (!verify(index)) {
+          synchronized (corrupted) {
+            corrupted.set(index);
+          }
+        }
+        return null;
+      });
+    }
+    runAll(tasks, ForkJoinPool.commonPool());
+    return corrupted;
+  }
+
+  /**
+   * Reads, checks and decodes a single chunk, without reading the others
+   *
+   * @param chunk the number of the chunk
+   * @param key   the key that was used to encode
+   * @return the clear bytes of the chunk
+   * @throws IOException if the file can't be read or the chunk is corrupted
+   */
+  public byte[] decryptChunk(int chunk, byte[] key) throws IOException {
+    assert chunk >= 0 && chunk < offsets.length;
+    checkKey(key);
+
+    byte[] plain = new byte[lengths[chunk]];
+    if (!decryptChunk(chunk, key, iv(key, nonce), plain, 0)) {
+      throw new IOException("Corrupted chunk " + chunk);
+    }
+    return plain;
+  }
+
+  /**
+   * Decodes the whole data on the common pool, see
+   * {@link #decrypt(byte[], BitSet, ExecutorService)}
+   *
+   * @param key       the key that was used to encode
+   * @param corrupted receives the numbers of the corrupted chunks
+   * @return the clear data, zeros in place of the corrupted chunks
+   * @throws IOException if the file can't be read
+   */
+  public byte[] decrypt(byte[] key, BitSet corrupted) throws IOException {
+    return decrypt(key, corrupted, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Decodes the whole data, every chunk being read, checked and decoded by the
+   * threads of an executor directly at its place in the result. A corrupted chunk
+   * is left as zeros and reported, the others are still decoded.
+   *
+   * @param key       the key that was used to encode
+   * @param corrupted receives the numbers of the corrupted chunks
+   * @param executor  the executor decoding the chunks
+   * @return the clear data, zeros in place of the corrupted chunks
+   * @throws IOException if the file can't be read
+   */
+  public byte[] decrypt(byte[] key, BitSet corrupted, ExecutorService executor) throws IOException {
+    assert corrupted != null;
+    assert executor != null;
+    checkKey(key);
+
+    long start = Metrics.start();
+    byte[] plain = new byte[(int) size];
+    byte[] iv = iv(key, nonce);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(offsets.length);
+    for (int chunk = 0; chunk < offsets.length; ++chunk) {
+      final int index = chunk;
+      tasks.add(() -> {
+        if (!decryptChunk(index, key, iv, plain, index * chunkSize)) {
+          synchronized (corrupted) {
+            corrupted.set(index);
+          }
+        }
+        return null;
+      });
+    }
+    runAll(tasks, executor);
+    Metrics.stop(Metrics.Operation.READ_FILE, type, size, start);
+    return plain;
+  }
+
+  /**
+   * Reads a chunk into an array, checks it and decodes it in place
+   *
+   * @return false if the chunk is corrupted, its place is then filled with zeros
+   */
+  private boolean decryptChunk(int chunk, byte[] key, byte[] iv, byte[] plain, int offset) throws IOException {
+    int length = lengths[chunk];
+    readFully(channel, offsets[chunk], ByteBuffer.wrap(plain, offset, length));
+    if (checksum(plain, offset, length) != checksums[chunk]) {
+      Arrays.fill(plain, offset, offset + length, (byte) 0);
+      return false;
+    }
+    transform(plain, offset, length, chunk, (long) chunk * chunkSize, type, key, iv, true);
+    return true;
+  }
+
+  private void checkKey(byte[] key) {
+    assert key != null;
+
+    if (key.length != keyLength) {
+      throw new IllegalArgumentException("The key has " + key.length + " bytes, the data was encoded with "
+          + keyLength);
+    }
+  }
+
+  /**
+   * Runs the tasks, the I/O errors of the tasks are thrown as they are
+   */
+  private static void runAll(List<Callable<Void>> tasks, ExecutorService executor) throws IOException {
+    try {
+      ParallelEncrypt.runAll(executor, tasks);
+    } catch (IllegalStateException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  // -----------------------Chunks-------------------------
+
+  /**
+   * Encodes or decodes a chunk in place, as a message of its own
+   *
+   * @param buffer   the array containing the chunk
+   * @param offset   the index of the first byte of the chunk
+   * @param length   the length of the chunk
+   * @param chunk    the number of the chunk
+   * @param position the index of the first byte of the chunk in the whole data
+   * @param iv       the key XORed with the nonce, for CBC and CTR
+   */
+  private static void transform(byte[] buffer, int offset, int length, int chunk, long position, int type,
+      byte[] key, byte[] iv, boolean decrypt) {
+    switch (type) {
+      case Encrypt.CAESAR:
+        Encrypt.caesar(buffer, offset, buffer, offset, length, decrypt ? (byte) -key[0] : key[0], true);
+        break;
+      case Encrypt.VIGENERE:
+        Encrypt.vigenere(buffer, offset, buffer, offset, length, decrypt ? Helper.keyInverterVigenere(key) : key, 0,
+            true);
+        break;
+      case Encrypt.XOR:
+        Encrypt.xor(buffer, offset, buffer, offset, length, key[0], true);
+        break;
+      case Encrypt.ONETIME:
+        Encrypt.oneTimePad(buffer, offset, key, (int) position, buffer, offset, length);
+        break;
+      case Encrypt.CBC:
+        byte[] chain = new byte[iv.length]; // every chunk starts from its own IV
+        Encrypt.counterBlocks(iv, chunk, chain, 1);
+        if (decrypt) {
+          Decrypt.decryptCBC(buffer, offset, buffer, offset, length, chain, 0);
+        } else {
+          Encrypt.cbc(buffer, offset, buffer, offset, length, chain, 0);
+        }
+        break;
+      case Encrypt.CTR:
+        Encrypt.ctr(buffer, offset, buffer, offset, length, iv, position);
+        break;
+      default: // rejected when the container is written or read
+        break;
+    }
+  }
+
+  /**
+   * @return the length of the nonce stored for a method and a key length : the
+   *         key length for CBC and CTR, 0 for the other methods
+   */
+  private static int nonceLength(int type, int keyLength) {
+    return (type == Encrypt.CBC || type == Encrypt.CTR) ? keyLength : 0;
+  }
+
+  /**
+   * @return the key XORed with the nonce, the key itself if the nonce is empty
+   */
+  private static byte[] iv(byte[] key, byte[] nonce) {
+    byte[] iv = key.clone();
+    for (int i = 0; i < nonce.length; ++i) {
+      iv[i] ^= nonce[i];
+    }
+    return iv;
+  }
+
+  private static int checksum(byte[] bytes, int offset, int length) {
+    CRC32C crc = new CRC32C();
+    crc.update(bytes, offset, length);
+    return (int) crc.getValue();
+  }
+}
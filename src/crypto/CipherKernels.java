@@ -0,0 +1,32 @@
+package crypto;
+
+/**
+ * The loops encoding every byte on its own (Caesar, XOR, one time pad), behind
+ * the offset/length methods of {@link Encrypt}. The scalar version is always
+ * available; a vectorized version is used when it was compiled (Maven build)
+ * and the jdk.incubator.vector module is present at run time
+ * (--add-modules jdk.incubator.vector). It can be disabled with
+ * -Dcrypto.vector=false.
+ */
+interface CipherKernels {
+
+  void caesar(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte key, boolean spaceEncoding);
+
+  void xor(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte key, boolean spaceEncoding);
+
+  void oneTimePad(byte[] src, int srcOff, byte[] pad, int padOff, byte[] dst, int dstOff, int len);
+
+  /**
+   * @return the fastest kernels available
+   */
+  static CipherKernels load() {
+    if (!Boolean.parseBoolean(System.getProperty("crypto.vector", "true"))) {
+      return new ScalarKernels();
+    }
+    try {
+      return (CipherKernels) Class.forName("crypto.VectorKernels").getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) { // not compiled, or module not present
+      return new ScalarKernels();
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package crypto;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A cipher prepared once for a key, to encode (or decode) many short messages
+ * with it. The key is parsed and expanded when the session is created : Caesar
+ * and XOR become a 256 entry substitution table (with the space mapped to
+ * itself), Vigenere a key stream long enough to be read without taking the
+ * modulo of the keyword length for most messages, CTR the first blocks of its
+ * key stream. Encoding a message is then a lookup loop without allocation.
+ *
+ * A session never changes after its creation, and the buffers it needs while
+ * encoding (String conversion, CBC chaining block) belong to the calling
+ * thread, so a session can be shared between threads.
+ *
+ * Every message is encoded from the start of the key : the same message always
+ * gives the same result, see {@link Encrypt#encrypt(String, String, int)}.
+ */
+public final class CipherSession {
+
+  private static final int KEY_STREAM_LENGTH = 256; // minimum length of the expanded Vigenere key and CTR stream
+  private static final int INITIAL_BUFFER_SIZE = 256;
+
+  private final int type;
+  private final boolean decrypt;
+  private final byte[] table; // Caesar and XOR substitution, indexed by unsigned byte value
+  private final byte[] keyStream; // Vigenere keyword repeated, already inverted to decode
+  private final byte[] key; // one time pad, CBC or CTR IV
+  private final byte[] ctrStream; // first blocks of the CTR key stream, the same for every message
+
+  private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+  private final ThreadLocal<byte[]> chains;
+
+  /**
+   * Creates a session to encode messages
+   *
+   * @param type the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3
+   *             = One time pad, 4 = CBC, 5 = CTR
+   * @param key  the key used to encode
+   */
+  public CipherSession(int type, String key) {
+    this(type, Helper.stringToBytes(key), false);
+  }
+
+  /**
+   * Creates a session to encode or decode messages
+   *
+   * @param type    the method used : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3 = One
+   *                time pad, 4 = CBC, 5 = CTR
+   * @param key     the key used to encode the messages
+   * @param decrypt if true, the messages are decoded with the same key instead
+   */
+  public CipherSession(int type, byte[] key, boolean decrypt) {
+    assert key != null;
+    assert key.length != 0;
+
+    this.type = type;
+    this.decrypt = decrypt;
+    this.table = (type == Encrypt.CAESAR || type == Encrypt.XOR) ? substitutionTable(type, key[0], decrypt) : null;
+    this.keyStream = (type == Encrypt.VIGENERE) ? keyStream(decrypt ? Helper.keyInverterVigenere(key) : key) : null;
+    this.key = key.clone();
+    this.ctrStream = (type == Encrypt.CTR) ? ctrStream(key) : null;
+    this.chains = (type == Encrypt.CBC) ? ThreadLocal.withInitial(() -> new byte[key.length]) : null;
+  }
+
+  /**
+   * @return the method used : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3 = One time
+   *         pad, 4 = CBC, 5 = CTR
+   */
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * Encodes (or decodes) a message given as a String, gives the same result as
+   * {@link Encrypt#encrypt(String, String, int)}. Only the resulting String is
+   * allocated.
+   *
+   * @param message the message
+   * @return the result
+   */
+  public String encrypt(String message) {
+    assert message != null;
+
+    int length = message.length();
+    byte[] buffer = buffer(length);
+    for (int i = 0; i < length; ++i) {
+      char c = message.charAt(i);
+      if (c > 0xFF) { // not a Latin-1 character, let the charset replace it
+        byte[] bytes = Helper.stringToBytes(message);
+        encrypt(bytes, 0, bytes, 0, bytes.length);
+        return Helper.bytesToString(bytes);
+      }
+      buffer[i] = (byte) c;
+    }
+    encrypt(buffer, 0, buffer, 0, length);
+    return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Encodes (or decodes) a message into a new array
+   *
+   * @param message the bytes of the message
+   * @return the result
+   */
+  public byte[] encrypt(byte[] message) {
+    assert message != null;
+
+    byte[] result = new byte[message.length];
+    encrypt(message, 0, result, 0, message.length);
+    return result;
+  }
+
+  /**
+   * Encodes (or decodes) a message into an array, without allocating. Source and
+   * destination can be the same array, to encode in place.
+   *
+   * @param src    the array containing the message
+   * @param srcOff the index of the first byte of the message
+   * @param dst    the array receiving the result
+   * @param dstOff the index of the first byte of the result
+   * @param len    the length of the message
+   */
+  public void encrypt(byte[] src, int srcOff, byte[] dst, int dstOff, int len) {
+    assert src != null && dst != null;
+    assert srcOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && dstOff + len <= dst.length;
+
+    switch (type) {
+      case Encrypt.CAESAR:
+      case Encrypt.XOR:
+        for (int i = 0; i < len; ++i) {
+          dst[dstOff + i] = table[src[srcOff + i] & 0xFF];
+        }
+        break;
+      case Encrypt.VIGENERE:
+        vigenere(src, srcOff, dst, dstOff, len);
+        break;
+      case Encrypt.ONETIME:
+        if (len > key.length) {
+          throw new IllegalArgumentException("The one time pad is shorter than the message");
+        }
+        Encrypt.oneTimePad(src, srcOff, key, 0, dst, dstOff, len);
+        break;
+      case Encrypt.CBC:
+        byte[] chain = chains.get(); // restarts from the IV for every message
+        System.arraycopy(key, 0, chain, 0, key.length);
+        if (decrypt) {
+          Decrypt.decryptCBC(src, srcOff, dst, dstOff, len, chain, 0);
+        } else {
+          Encrypt.cbc(src, srcOff, dst, dstOff, len, chain, 0);
+        }
+        break;
+      case Encrypt.CTR: // decoded with the same key stream
+        if (len <= ctrStream.length) {
+          Encrypt.oneTimePad(src, srcOff, ctrStream, 0, dst, dstOff, len);
+        } else {
+          Encrypt.ctr(src, srcOff, dst, dstOff, len, key, 0);
+        }
+        break;
+      default: // unknown algorithm, the message is copied untouched
+        if (src != dst || srcOff != dstOff) {
+          System.arraycopy(src, srcOff, dst, dstOff, len);
+        }
+        break;
+    }
+  }
+
+  private void vigenere(byte[] src, int srcOff, byte[] dst, int dstOff, int len) {
+    int keyPointer = 0; // spaces do not move the key, see Encrypt.vigenere
+    for (int i = 0; i < len; ++i) {
+      byte b = src[srcOff + i];
+      if (b == Encrypt.SPACE) {
+        dst[dstOff + i] = Encrypt.SPACE;
+      } else {
+        dst[dstOff + i] = (byte) (b + keyStream[keyPointer]);
+        if (++keyPointer == keyStream.length) {
+          keyPointer = 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * @param length the number of bytes needed
+   * @return the buffer of the calling thread, at least length bytes long
+   */
+  private byte[] buffer(int length) {
+    byte[] buffer = buffers.get();
+    if (buffer.length < length) {
+      buffer = new byte[Math.max(length, buffer.length * 2)];
+      buffers.set(buffer);
+    }
+    return buffer;
+  }
+
+  /**
+   * Builds the result of the encoding of every possible byte, spaces are not
+   * encoded
+   */
+  private static byte[] substitutionTable(int type, byte key, boolean decrypt) {
+    byte[] table = new byte[Decrypt.ALPHABETSIZE];
+    for (int i = 0; i < table.length; ++i) {
+      byte b = (byte) i;
+      if (b == Encrypt.SPACE) {
+        table[i] = Encrypt.SPACE;
+      } else if (type == Encrypt.CAESAR) {
+        table[i] = (byte) (decrypt ? b - key : b + key);
+      } else {
+        table[i] = (byte) (b ^ key);
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Generates whole blocks of CTR key stream until it is at least
+   * KEY_STREAM_LENGTH bytes long
+   */
+  private static byte[] ctrStream(byte[] iv) {
+    int blocks = (KEY_STREAM_LENGTH + iv.length - 1) / iv.length;
+    byte[] stream = new byte[blocks * iv.length];
+    Encrypt.counterBlocks(iv, 0, stream, blocks);
+    return stream;
+  }
+
+  /**
+   * Repeats the keyword until it is at least KEY_STREAM_LENGTH bytes long,
+   * keeping whole keywords so that the stream can be read in a loop
+   */
+  private static byte[] keyStream(byte[] keyword) {
+    int repetitions = (KEY_STREAM_LENGTH + keyword.length - 1) / keyword.length;
+    byte[] stream = new byte[repetitions * keyword.length];
+    for (int i = 0; i < repetitions; ++i) {
+      System.arraycopy(keyword, 0, stream, i * keyword.length, keyword.length);
+    }
+    return stream;
+  }
+}
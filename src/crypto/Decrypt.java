@@ -1,10 +1,13 @@
 package crypto;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Decrypt {
 
@@ -22,6 +25,18 @@ public class Decrypt {
   public static final int VIGENERE = 1;
   public static final int XOR = 2;
 
+  private static final int CBC_BYTES_PER_TASK = 1 << 16; // size of the parts decoded by each parallel task
+  private static final int CTR_BYTES_PER_TASK = 1 << 16;
+
+  public static final int KEY_LENGTH_CANDIDATES = 5; // key lengths tried by vigenereWithCandidates
+  // relative difference of score under which the shorter key length is preferred
+  private static final double KEY_LENGTH_TOLERANCE = 0.01;
+
+  // relative margin between the two best Caesar keys above which a sample is trusted, English text gives about 0.3
+  public static final double CAESAR_CONFIDENCE = 0.2;
+  private static final int CAESAR_STRATA = 16; // parts of the text sampled side by side
+  private static final int CAESAR_ROUND_BYTES = 1 << 10; // bytes added to the sample before each check
+
   /**
    * Method to break a string encoded with different types of cryptosystems
    * 
@@ -33,21 +48,180 @@ public class Decrypt {
   public static String breakCipher(String cipher, int type) {
     assert cipher != null;
 
+    if (type != CAESAR && type != VIGENERE && type != XOR) {
+      return cipher;
+    }
+    return Helper.bytesToString(breakCipher(Helper.stringToBytes(cipher), type));
+
+  }
+
+  /**
+   * Same as {@link #breakCipher(String, int)} on the bytes of the cipher
+   * 
+   * @param encoded the byte array representing the encoded text
+   * @param type    the integer representing the method to break : 0 = Caesar, 1
+   *                = Vigenere, 2 = XOR
+   * @return the decoded text, every possible text on its own line for XOR, or the
+   *         encoded text if type is not in the list above.
+   */
+  public static byte[] breakCipher(byte[] encoded, int type) {
+    assert encoded != null;
+
+    long start = Metrics.start();
+    byte[] decoded;
+    if (type == CAESAR || type == VIGENERE) {
+      decoded = decodeWithFoundKey(encoded, type, findKey(encoded, type));
+    } else if (type == XOR) {
+      decoded = xorBruteForceLines(encoded, 0, encoded.length);
+    } else {
+      return encoded;
+    }
+    Metrics.stop(Metrics.Operation.BREAK, type, encoded.length, start);
+    return decoded;
+  }
+
+  /**
+   * Adaptive mode of {@link #breakCipher(byte[], int)} : the Caesar key is found
+   * from a sample of the text that grows until the best key is trusted, see
+   * {@link #caesarWithFrequencies(byte[], double)}, so the time spent does not
+   * depend on the length of the text. Vigenere and XOR are broken as by
+   * {@link #breakCipher(byte[], int)}.
+   * 
+   * @param encoded    the byte array representing the encoded text
+   * @param type       the integer representing the method to break : 0 =
+   *                   Caesar, 1 = Vigenere, 2 = XOR
+   * @param confidence the relative margin between the two best Caesar keys
+   *                   needed to stop sampling, see CAESAR_CONFIDENCE
+   * @return the decoded text, every possible text on its own line for XOR, or the
+   *         encoded text if type is not in the list above.
+   */
+  public static byte[] breakCipher(byte[] encoded, int type, double confidence) {
+    assert encoded != null;
+    assert confidence >= 0;
+
+    if (type != CAESAR) {
+      return breakCipher(encoded, type);
+    }
+    long start = Metrics.start();
+    byte key = caesarWithFrequencies(encoded, confidence);
+    byte[] decoded = decodeWithFoundKey(encoded, type, new byte[] { key });
+    Metrics.stop(Metrics.Operation.BREAK, type, encoded.length, start);
+    return decoded;
+  }
+
+  /**
+   * Same as {@link #breakCipher(String, int)}, but the key found for a cipher
+   * text is kept in a cache, so that breaking it again only decodes it. XOR is
+   * not cached, since all its keys are tried anyway.
+   * 
+   * @param cipher the encoded message
+   * @param type   the integer representing the method to break : 0 = Caesar, 1
+   *               = Vigenere, 2 = XOR
+   * @param cache  the cache of the keys already found, can be null
+   * @return the decoded string or the original encoded message if type is not in
+   *         the list above.
+   */
+  public static String breakCipher(String cipher, int type, BreakCache cache) {
+    assert cipher != null;
+
+    if (cache == null || (type != CAESAR && type != VIGENERE)) {
+      return breakCipher(cipher, type);
+    }
+    long start = Metrics.start();
     byte[] encoded = Helper.stringToBytes(cipher);
+    byte[] key = cache.get(encoded, type);
+    if (key == null) {
+      key = findKey(encoded, type);
+      cache.put(encoded, type, key);
+    }
+    byte[] decoded = decodeWithFoundKey(encoded, type, key);
+    Metrics.stop(Metrics.Operation.BREAK, type, encoded.length, start);
+    return Helper.bytesToString(decoded);
+  }
 
+  /**
+   * Finds the key of a Caesar (one byte, from the whole text, as
+   * {@link #breakCipherBatch(MessageBatch, int)} does) or Vigenere cipher text,
+   * as used by {@link #decodeWithFoundKey(byte[], int, byte[])}
+   */
+  private static byte[] findKey(byte[] encoded, int type) {
+    if (type == CAESAR) {
+      return new byte[] { caesarWithFrequencies(encoded) };
+    }
+    return vigenereWithFrequencies(encoded);
+  }
+
+  private static byte[] decodeWithFoundKey(byte[] encoded, int type, byte[] key) {
     if (type == CAESAR) {
-      byte originalKey = caesarWithFrequencies(encoded);
-      byte[] decoded = Encrypt.caesar(encoded, (byte) -originalKey);
-      return Helper.bytesToString(decoded);
-    } else if (type == VIGENERE) {
-      byte[] key = vigenereWithFrequencies(encoded);
-      byte[] decoded = Encrypt.vigenere(encoded, key, true);
-      return Helper.bytesToString(decoded);
+      byte originalKey = key[0];
+      return Encrypt.caesar(encoded, (byte) -originalKey);
+    }
+    return Encrypt.vigenere(encoded, key, true);
+  }
+
+  /**
+   * Breaks a whole batch of messages encoded with the same method (each message
+   * with its own key), going through the packed messages without converting
+   * them to Strings. Caesar and Vigenere results keep the layout of the batch,
+   * XOR results are the 256 possible texts of each message, one per line, as in
+   * {@link #breakCipher(String, int)}.
+   * 
+   * @param batch the encoded messages
+   * @param type  the integer representing the method to break : 0 = Caesar, 1 =
+   *              Vigenere, 2 = XOR
+   * @return the decoded messages, or the batch itself if type is not in the list
+   *         above.
+   */
+  public static MessageBatch breakCipherBatch(MessageBatch batch, int type) {
+    assert batch != null;
+
+    byte[] data = batch.data();
+    if (type == CAESAR || type == VIGENERE) {
+      byte[] decoded = new byte[data.length];
+      FrequencyHistogram histogram = new FrequencyHistogram(); // reused for every message
+      for (int i = 0; i < batch.size(); ++i) {
+        int offset = batch.offset(i);
+        int length = batch.length(i);
+        if (type == CAESAR) {
+          histogram.clear();
+          histogram.addAll(data, offset, length);
+          byte originalKey = caesarFindKey(histogram);
+          Encrypt.caesar(data, offset, decoded, offset, length, (byte) -originalKey, false);
+          continue;
+        }
+        ByteSequence cipherWithoutSpaces = ByteSequence.withoutSpaces(data, offset, length);
+        byte[] key = cipherWithoutSpaces.isEmpty() ? new byte[0] : vigenereKey(cipherWithoutSpaces);
+        if (key.length == 0) { // no key found, the message is left untouched
+          System.arraycopy(data, offset, decoded, offset, length);
+        } else {
+          Encrypt.vigenere(data, offset, decoded, offset, length, key, 0, true);
+        }
+      }
+      return new MessageBatch(decoded, batch.offsets());
     } else if (type == XOR) {
-      return arrayToString(xorBruteForce(encoded));
+      MessageBatch.Builder decoded = new MessageBatch.Builder(batch.size());
+      for (int i = 0; i < batch.size(); ++i) {
+        decoded.add(xorBruteForceLines(data, batch.offset(i), batch.length(i)));
+      }
+      return decoded.build();
     }
-    return cipher;
+    return batch;
+  }
 
+  /**
+   * Decodes a part of an array with the 256 XOR keys, and writes the results one
+   * per line, as {@link #arrayToString(byte[][])} does with
+   * {@link #xorBruteForce(byte[])}
+   */
+  private static byte[] xorBruteForceLines(byte[] cipher, int offset, int length) {
+    byte[] separator = Helper.stringToBytes(System.lineSeparator());
+    int lineLength = length + separator.length;
+    byte[] lines = new byte[ALPHABETSIZE * lineLength];
+    for (int i = 0; i < ALPHABETSIZE; ++i) {
+      Encrypt.xor(cipher, offset, lines, i * lineLength, length, (byte) (Encrypt.LOWER_BOUND + i), false);
+      System.arraycopy(separator, 0, lines, i * lineLength + length, separator.length);
+    }
+    return lines;
   }
 
   /**
@@ -60,14 +234,14 @@ public class Decrypt {
     assert bruteForceResult != null;
     assert bruteForceResult.length != 0;
 
-    String result = "";
+    StringBuilder result = new StringBuilder();
 
     for (byte[] element : bruteForceResult) {
-      result += Helper.bytesToString(element); // adds the possible combination
-      result += System.lineSeparator(); // newline
+      result.append(Helper.bytesToString(element)); // adds the possible combination
+      result.append(System.lineSeparator()); // newline
     }
 
-    return result;
+    return result.toString();
   }
 
   // -----------------------Caesar-------------------------
@@ -78,6 +252,7 @@ public class Decrypt {
    * 
    * @param cipher the byte array representing the encoded text
    * @return a 2D byte array containing all the possibilities
+   * @see BruteForce#caesar(byte[], int) to only keep the best candidates
    */
   public static byte[][] caesarBruteForce(byte[] cipher) {
     assert cipher != null;
@@ -105,47 +280,87 @@ public class Decrypt {
     assert cipherText != null;
     assert cipherText.length != 0;
 
-    float[] frequencies = computeFrequencies(cipherText);
-    return caesarFindKey(frequencies);
+    return caesarFindKey(FrequencyHistogram.of(cipherText));
   }
 
   /**
-   * Method that computes the frequencies of letters inside a byte array
-   * corresponding to a String
+   * Same as {@link #caesarWithFrequencies(byte[])}, but only analyzes as much of
+   * the text as needed. The text is cut in CAESAR_STRATA parts, and the
+   * beginning of every part is added to the sample, CAESAR_ROUND_BYTES at a
+   * time, so that a text changing along the way is still sampled everywhere.
+   * After each round, the scalar products are updated with the bytes just added,
+   * and the search stops as soon as the best key beats the second one by the
+   * confidence margin. The time spent then does not depend on the length of the
+   * text. If the margin is never reached, the whole text is analyzed and the
+   * result is the one of {@link #caesarWithFrequencies(byte[])}.
    * 
-   * @param cipherText the byte array
-   * @return the character frequencies as an array of float
+   * @param cipherText the byte array representing the encoded text
+   * @param confidence the relative margin (best - second) / best needed to stop,
+   *                   from 0 (the first round is enough) to 1 and more (the
+   *                   whole text is always analyzed), see CAESAR_CONFIDENCE
+   * @return the encoding key
    */
-  public static float[] computeFrequencies(byte[] cipherText) {
+  public static byte caesarWithFrequencies(byte[] cipherText, double confidence) {
     assert cipherText != null;
     assert cipherText.length != 0;
-
-    float[] frequencies = new float[256]; // empty array to store the frequencies of cipherText
-    int notSpacesCounter = 0; // variable to keep track of the number of characters that are not spaces
-    for (int i = 0; i < cipherText.length; i++) {
-      if (cipherText[i] != 32) {
-        notSpacesCounter++; // gets the total number of nonsapce characters
+    assert confidence >= 0;
+
+    int stratumLength = (cipherText.length + CAESAR_STRATA - 1) / CAESAR_STRATA;
+    int step = CAESAR_ROUND_BYTES / CAESAR_STRATA; // bytes taken from every part at each round
+    FrequencyHistogram sample = new FrequencyHistogram();
+    FrequencyHistogram round = new FrequencyHistogram();
+    double[] scalarProducts = new double[ALPHABETSIZE];
+    for (int taken = 0; taken < stratumLength; taken += step) {
+      round.clear();
+      for (int stratum = 0; stratum < CAESAR_STRATA; ++stratum) {
+        int from = stratum * stratumLength + taken;
+        int to = Math.min(from + step, Math.min((stratum + 1) * stratumLength, cipherText.length));
+        if (from < to) {
+          round.addAll(cipherText, from, to - from);
+        }
+      }
+      round.addScalarProductsTo(scalarProducts);
+      sample.merge(round);
+      if (taken + step < stratumLength && caesarMargin(scalarProducts) >= confidence) {
+        return caesarKeyFromScalarProducts(scalarProducts);
       }
     }
-    for (int letter = 0; letter < 256; letter++) { // iterates over all the letter obtainable from bytes
-      int letterOccurencies = 0; // keey track of the occurency of a specific letter
-
-      if (letter == 32) // skip spaces
-        continue;
-
-      for (int i = 0; i < cipherText.length; i++) { // iterates over cipherText
-        if ((letter > 127 && (letter - 256) == cipherText[i]) || letter == cipherText[i]) // check if the letter index
-                                                                                          // correspond to the byte
-          letterOccurencies++; // if the letter is found increases the counter
-
-        frequencies[letter] = (float) letterOccurencies / notSpacesCounter; // store the division between the total
-                                                                            // number of occurencies and the total
-                                                                            // number of nonspace characters
+    return caesarFindKey(sample); // the whole text was needed
+  }
 
+  /**
+   * @param scalarProducts the 256 scalar products with the English frequencies
+   * @return the relative margin between the two biggest scalar products, 0 if
+   *         there is no letter yet
+   */
+  private static double caesarMargin(double[] scalarProducts) {
+    double best = 0.0;
+    double second = 0.0;
+    for (double scalarProduct : scalarProducts) {
+      if (scalarProduct > best) {
+        second = best;
+        best = scalarProduct;
+      } else if (scalarProduct > second) {
+        second = scalarProduct;
       }
     }
+    return (best == 0.0) ? 0.0 : (best - second) / best;
+  }
 
-    return frequencies;
+  /**
+   * Method that computes the frequencies of letters inside a byte array
+   * corresponding to a String
+   * 
+   * @param cipherText the byte array
+   * @return the character frequencies as an array of float
+   */
+  public static float[] computeFrequencies(byte[] cipherText) {
+    assert cipherText != null;
+    assert cipherText.length != 0;
+
+    // a single pass over cipherText to count every letter, then a division by the
+    // number of characters that are not spaces
+    return FrequencyHistogram.of(cipherText).frequencies();
   }
 
   /**
@@ -159,38 +374,47 @@ public class Decrypt {
     assert charFrequencies != null;
     assert charFrequencies.length != 0;
 
-    byte key;
-    double[] scalarProducts = new double[256];
-    int offset = 0;
-
-    for (int i = 0; i < ALPHABETSIZE; i++) { // iterates over the possible frequencies
+    double[] scalarProducts = new double[ALPHABETSIZE];
+    for (int i = 0; i < ALPHABETSIZE; i++) { // iterates over the possible positions of 'a'
       for (int j = 0; j < ENGLISHFREQUENCIES.length; j++) { // iterates over the alphabet
-        int bound = offset % ENGLISHFREQUENCIES.length; // solve indices out of bound problem to try every possible
-                                                        // combination
-        if (i + bound < ALPHABETSIZE) {
-          // scalar product
-          scalarProducts[i] += ENGLISHFREQUENCIES[j] * charFrequencies[i + bound];
-        } else {
-          // scalar product
-          scalarProducts[i] += ENGLISHFREQUENCIES[j] * charFrequencies[i - ALPHABETSIZE + bound];
-        }
-        ++offset; // shifts the iteration of 1 position
+        // scalar product, the index wraps around to try every possible combination
+        scalarProducts[i] += ENGLISHFREQUENCIES[j] * charFrequencies[(i + j) % ALPHABETSIZE];
       }
     }
 
-    // find the maximum scalar product
+    return caesarKeyFromScalarProducts(scalarProducts);
+  }
+
+  /**
+   * Method that finds the key used by a Caesar encoding from the histogram of
+   * the cipher text
+   * 
+   * @param histogram the histogram of the cipher text
+   * @return the key
+   */
+  public static byte caesarFindKey(FrequencyHistogram histogram) {
+    assert histogram != null;
+
+    return caesarKeyFromScalarProducts(histogram.scalarProducts());
+  }
+
+  /**
+   * Finds the maximum scalar product and converts its position into the key
+   * 
+   * @param scalarProducts the 256 scalar products with the English frequencies
+   * @return the key
+   */
+  public static byte caesarKeyFromScalarProducts(double[] scalarProducts) {
     double maximumValue = 0.0; // store the temporary maximum scalar product
     int maximumIndex = 0; // store the temporary index of the maxium scalar product
-    for (int i = 0; i < 256; i++) {
+    for (int i = 0; i < ALPHABETSIZE; i++) {
       if (maximumValue < scalarProducts[i]) { // looks for the biggest scalar product
         maximumValue = scalarProducts[i];
         maximumIndex = i;
       }
     }
-    key = (byte) -(maximumIndex - 97); // convert the distance between the maximum scalar product and the
-                                       // aposition of the alphabet into the key
-
-    return key;
+    return (byte) -(maximumIndex - 97); // convert the distance between the maximum scalar product and the
+                                        // aposition of the alphabet into the key
   }
 
   // -----------------------XOR-------------------------
@@ -201,6 +425,7 @@ public class Decrypt {
    * 
    * @param cipher the byte array representing the encoded text
    * @return the array of possibilities for the clear text
+   * @see BruteForce#xor(byte[], int) to only keep the best candidates
    */
   public static byte[][] xorBruteForce(byte[] cipher) {
     assert cipher != null;
@@ -208,7 +433,7 @@ public class Decrypt {
 
     // basically the same explainations used for caesarBruteForce
     final int LOWER_BOUND = -128;
-    byte[][] result = new byte[255][cipher.length];
+    byte[][] result = new byte[256][cipher.length]; // every key, 127 included
     for (int i = 0; i < result.length; ++i) {
       Integer integerKey = Integer.valueOf(LOWER_BOUND + i);
       byte byteKey = integerKey.byteValue();
@@ -232,12 +457,100 @@ public class Decrypt {
     assert cipher != null;
     assert cipher.length != 0;
 
-    List<Byte> cipherWithoutSpaces = removeSpaces(cipher);
+    return vigenereKey(ByteSequence.withoutSpaces(cipher));
+  }
+
+  /**
+   * Same as {@link #vigenereWithFrequencies(byte[])}, with a choice of the way
+   * the key length is found
+   * 
+   * @param cipher   the byte array representing the encoded text
+   * @param strategy the key length search
+   * @return the inverse key to decode the Vigenere cipher text, empty if no key
+   *         length was found
+   */
+  public static byte[] vigenereWithFrequencies(byte[] cipher, KeyLengthStrategy strategy) {
+    assert cipher != null;
+    assert cipher.length != 0;
+    assert strategy != null;
+
+    ByteSequence cipherWithoutSpaces = ByteSequence.withoutSpaces(cipher);
+    if (strategy == KeyLengthStrategy.COINCIDENCE) {
+      return vigenereFindKey(cipherWithoutSpaces, vigenereFindKeyLengthByShifts(cipherWithoutSpaces));
+    }
+    byte[] bytes = cipherWithoutSpaces.toArray();
+    if (strategy == KeyLengthStrategy.COMBINED) { // all the estimates, the key giving the best text decides
+      int[] kasiski = KasiskiEstimator.keyLengths(bytes, KasiskiEstimator.DEFAULT_MAX_KEY_LENGTH,
+          KEY_LENGTH_CANDIDATES);
+      int fft = KeyLengthFinder.findKeyLength(bytes);
+      boolean known = (fft == 0);
+      for (int keyLength : kasiski) {
+        known |= (keyLength == fft);
+      }
+      int[] keyLengths = known ? kasiski : Arrays.copyOf(kasiski, kasiski.length + 1);
+      if (!known) {
+        keyLengths[kasiski.length] = fft;
+      }
+      return vigenereFindKey(cipherWithoutSpaces, keyLengths);
+    }
+    int keyLength = (strategy == KeyLengthStrategy.KASISKI) ? KasiskiEstimator.findKeyLength(bytes) : 0;
+    if (keyLength == 0) {
+      keyLength = KeyLengthFinder.findKeyLength(bytes);
+    }
+    return (keyLength == 0) ? new byte[0] : vigenereFindKey(cipherWithoutSpaces, keyLength);
+  }
+
+  private static byte[] vigenereKey(ByteSequence cipherWithoutSpaces) {
     int keyLength = vigenereFindKeyLength(cipherWithoutSpaces);
     byte[] key = vigenereFindKey(cipherWithoutSpaces, keyLength);
     return key;
   }
 
+  /**
+   * Same as {@link #vigenereWithFrequencies(byte[])}, but instead of trusting
+   * the most frequent key length, the best candidate key lengths are all tried
+   * and the key giving the text closest to English is kept. The divisors of the
+   * candidates are tried too : the local maximums of the coincidences are
+   * searched two offsets around, so a key of one or two letters only shows
+   * through its multiples.
+   * 
+   * @param cipher     the byte array representing the encoded text
+   * @param candidates the number of key lengths tried, before their divisors
+   * @return the inverse key to decode the Vigenere cipher text
+   */
+  public static byte[] vigenereWithCandidates(byte[] cipher, int candidates) {
+    assert cipher != null;
+    assert cipher.length != 0;
+    assert candidates > 0;
+
+    ByteSequence cipherWithoutSpaces = ByteSequence.withoutSpaces(cipher);
+    int[] keyLengths = withDivisors(vigenereFindKeyLengths(cipherWithoutSpaces, candidates));
+    return vigenereFindKey(cipherWithoutSpaces, keyLengths);
+  }
+
+  /**
+   * @return the key lengths followed by their divisors that are not already in
+   *         the list
+   */
+  private static int[] withDivisors(int[] keyLengths) {
+    List<Integer> all = new ArrayList<Integer>();
+    for (int keyLength : keyLengths) {
+      all.add(keyLength);
+    }
+    for (int keyLength : keyLengths) {
+      for (int divisor = 1; divisor < keyLength; ++divisor) {
+        if (keyLength % divisor == 0 && !all.contains(divisor)) {
+          all.add(divisor);
+        }
+      }
+    }
+    int[] result = new int[all.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = all.get(i);
+    }
+    return result;
+  }
+
   /**
    * Helper Method used to remove the space character in a byte array for the
    * clever Vigenere decoding
@@ -249,15 +562,7 @@ public class Decrypt {
     assert array != null;
     assert array.length != 0;
 
-    ArrayList<Byte> noSpace = new ArrayList<Byte>(); // new arraylist to store the result of the parsing
-
-    for (int i = 0; i < array.length; i++) {
-
-      if (array[i] != SPACE && i < array.length) { // if it's not space
-        noSpace.add(array[i]);
-      }
-    }
-    return noSpace;
+    return new ArrayList<Byte>(ByteSequence.withoutSpaces(array).asList());
   }
 
   /**
@@ -270,33 +575,151 @@ public class Decrypt {
     assert cipher != null;
     assert cipher.size() != 0;
 
+    return vigenereFindKeyLength(ByteSequence.of(cipher));
+  }
+
+  /**
+   * Method that computes the key length for a Vigenere cipher text, without
+   * boxing its bytes. The coincidences for all the offsets are computed at once
+   * by {@link KeyLengthFinder#coincidences(byte[], int)}, in n log n instead of
+   * n² for {@link #vigenereFindKeyLengthByShifts(ByteSequence)}.
+   * 
+   * @param cipher the encoded text without space
+   * @return the length of the key
+   */
+  public static int vigenereFindKeyLength(ByteSequence cipher) {
+    assert cipher != null;
+    assert cipher.size() != 0;
+
+    return vigenereFindKeyLength(cipher, vigenereCoincidences(cipher));
+  }
+
+  /**
+   * Reference version of {@link #vigenereFindKeyLength(ByteSequence)}, counting
+   * the coincidences of the cipher with itself shifted by one offset at a time.
+   * Quadratic in the length of the cipher, kept for the COINCIDENCE strategy and
+   * to check the faster search.
+   * 
+   * @param cipher the encoded text without space
+   * @return the length of the key
+   */
+  public static int vigenereFindKeyLengthByShifts(ByteSequence cipher) {
+    assert cipher != null;
+    assert cipher.size() != 0;
+
+    return vigenereFindKeyLength(cipher, shiftedCoincidences(cipher));
+  }
+
+  private static int vigenereFindKeyLength(ByteSequence cipher, int[] coincidences) {
+    long start = Metrics.start();
+    int keyLength = vigenereKeyLengthFromCoincidences(coincidences, coincidences.length / 2, Integer.MAX_VALUE);
+    Metrics.stop(Metrics.Operation.KEY_LENGTH, VIGENERE, cipher.size(), start);
+    return keyLength;
+  }
+
+  /**
+   * Method that computes the most likely key lengths for a Vigenere cipher text,
+   * the first one being the result of {@link #vigenereFindKeyLength(ByteSequence)}
+   * 
+   * @param cipher the encoded text without space
+   * @param count  the maximum number of key lengths returned
+   * @return the key lengths, from the most to the least likely
+   */
+  public static int[] vigenereFindKeyLengths(ByteSequence cipher, int count) {
+    assert cipher != null;
+    assert cipher.size() != 0;
+
+    int[] coincidences = vigenereCoincidences(cipher);
+    return vigenereKeyLengthCandidates(coincidences, coincidences.length / 2, Integer.MAX_VALUE, count);
+  }
+
+  /**
+   * First part of the key length search : counts the coincidences of the cipher
+   * with itself shifted by every offset, all at once
+   * 
+   * @param cipher the encoded text without space
+   * @return the number of coincidences for each offset, starting with offset 1
+   */
+  private static int[] vigenereCoincidences(ByteSequence cipher) {
+    if (cipher.size() < 2) { // no offset
+      return new int[0];
+    }
+    return KeyLengthFinder.coincidences(cipher.toArray(), cipher.size() - 1);
+  }
+
+  /**
+   * Same as {@link #vigenereCoincidences(ByteSequence)}, one offset at a time
+   */
+  private static int[] shiftedCoincidences(ByteSequence cipher) {
+
     // STEP 1
 
-    ArrayList<Integer> coincidences = new ArrayList<Integer>(); // creates an arraylist to store how many times it
-                                                                // encountered the same letter
+    int size = cipher.size();
+    int[] coincidences = new int[size - 1]; // stores how many times it encountered the same letter
     int frequenceCounter = 0; // frequence counter for a single letter
-    for (int offset = 1; offset < cipher.size(); ++offset) { // the distance from the original array
-      for (int i = offset; i < cipher.size() - offset; ++i) { // clamp between the zone in which both the arrays have
-                                                              // values
+    for (int offset = 1; offset < size; ++offset) { // the distance from the original array
+      for (int i = offset; i < size - offset; ++i) { // clamp between the zone in which both the arrays have
+                                                     // values
         int x = i - offset; // value used to iterate over the original array
         if (cipher.get(x) == cipher.get(i)) { // if the two character are the same
           ++frequenceCounter;
         }
       }
-      coincidences.add(frequenceCounter); // add the number of coincidences for that character
+      coincidences[offset - 1] = frequenceCounter; // add the number of coincidences for that character
       frequenceCounter = 0; // reset the frequenceCounter
     }
+    return coincidences;
+  }
+
+  /**
+   * Second part of the key length search : finds the local maximums of the
+   * coincidences, and returns the most frequent distance between two of them.
+   * 
+   * @param coincidences  the number of coincidences for each offset, starting
+   *                      with offset 1
+   * @param scanLimit     the number of offsets in which local maximums are
+   *                      searched
+   * @param maxKeyLength  the distances longer than this are ignored
+   * @return the length of the key, 0 if none was found
+   */
+  public static int vigenereKeyLengthFromCoincidences(int[] coincidences, int scanLimit, int maxKeyLength) {
+    int[] candidates = vigenereKeyLengthCandidates(coincidences, scanLimit, maxKeyLength, 1);
+    return (candidates.length == 0) ? 0 : candidates[0];
+  }
+
+  /**
+   * Same as {@link #vigenereKeyLengthFromCoincidences(int[], int, int)}, but
+   * returns the distances between local maximums ranked by frequency instead of
+   * only the most frequent one. Equally frequent distances keep the order in
+   * which the single key length search meets them.
+   * 
+   * @param coincidences the number of coincidences for each offset, starting
+   *                     with offset 1
+   * @param scanLimit    the number of offsets in which local maximums are
+   *                     searched
+   * @param maxKeyLength the distances longer than this are ignored
+   * @param count        the maximum number of key lengths returned
+   * @return the key lengths, from the most to the least frequent
+   */
+  public static int[] vigenereKeyLengthCandidates(int[] coincidences, int scanLimit, int maxKeyLength, int count) {
+    assert coincidences != null;
+    assert scanLimit <= coincidences.length;
+    assert count > 0;
+
+    if (coincidences.length < 3) { // too short for the neighborhood of the first offset
+      return new int[0];
+    }
 
     // STEP 2
 
     ArrayList<Integer> localMaximums = new ArrayList<Integer>();
     // for cycles that looks in the neighborhood of the list to check for the
     // maximum
-    for (int i = 0; i < Math.ceil(coincidences.size() / 2); ++i) {
+    for (int i = 0; i < scanLimit; ++i) {
       int minimumCounter = 0;
       if (i == 0) {
         for (int c = 0; c <= 2; ++c) { // case first element
-          if (coincidences.get(i + c) <= coincidences.get(i)) {
+          if (coincidences[i + c] <= coincidences[i]) {
             ++minimumCounter;
           }
         }
@@ -305,25 +728,25 @@ public class Decrypt {
         }
       } else if (i == 1) { // case second element
         for (int c = -1; c <= 2; ++c) {
-          if (coincidences.get(i + c) <= coincidences.get(i)) {
+          if (coincidences[i + c] <= coincidences[i]) {
             ++minimumCounter;
           }
         }
         if (minimumCounter >= 4) {
           localMaximums.add(i);
         }
-      } else if (i == coincidences.size() - 1) { // case last element
+      } else if (i == coincidences.length - 1) { // case last element
         for (int c = -2; c <= 0; ++c) {
-          if (coincidences.get(i + c) <= coincidences.get(i)) {
+          if (coincidences[i + c] <= coincidences[i]) {
             ++minimumCounter;
           }
         }
         if (minimumCounter >= 3) {
           localMaximums.add(i);
         }
-      } else if (i == coincidences.size() - 2) { // case second-last element
+      } else if (i == coincidences.length - 2) { // case second-last element
         for (int c = -2; c <= 1; ++c) {
-          if (coincidences.get(i + c) <= coincidences.get(i)) {
+          if (coincidences[i + c] <= coincidences[i]) {
             ++minimumCounter;
           }
         }
@@ -332,7 +755,7 @@ public class Decrypt {
         }
       } else {
         for (int c = -2; c <= 2; ++c) { // generic case
-          if (coincidences.get(i + c) <= coincidences.get(i)) {
+          if (coincidences[i + c] <= coincidences[i]) {
             ++minimumCounter;
           }
         }
@@ -348,23 +771,23 @@ public class Decrypt {
     Map<Integer, Integer> frequencies = new HashMap<Integer, Integer>();
     for (int i = 1; i < localMaximums.size(); ++i) { // cycle to analize every size in the array
       int size = localMaximums.get(i) - localMaximums.get(i - 1); // compute the size
+      if (size > maxKeyLength) // too long to be the key
+        continue;
       if (frequencies.get(size) == null) { // if size is not in the map it adds it
         frequencies.put(size, 1);
       } else { // if size is already in the map it increases its counter
         frequencies.replace(size, frequencies.get(size) + 1);
       }
     }
-    int mostFrequentSize = 0; // variable to keep track of the most frequent size
-    int mostFrequentSizeFrequence = 0; // variable to keep track of the most frequent size occurencies
-    for (Integer key : frequencies.keySet()) { // iterates over all the found sizes
-      Integer frequence = frequencies.get(key);
-      if (mostFrequentSizeFrequence < frequence) { // looking for the most frequent one
-        mostFrequentSize = key;// store the most frequent size
-        mostFrequentSizeFrequence = frequence;// store its frequence
-      }
-    }
+    List<Integer> sizes = new ArrayList<Integer>(frequencies.keySet());
+    // stable sort : the first size is the first most frequent one met in the map
+    sizes.sort((a, b) -> Integer.compare(frequencies.get(b), frequencies.get(a)));
 
-    return mostFrequentSize;
+    int[] candidates = new int[Math.min(count, sizes.size())];
+    for (int i = 0; i < candidates.length; ++i) {
+      candidates[i] = sizes.get(i);
+    }
+    return candidates;
 
   }
 
@@ -381,26 +804,27 @@ public class Decrypt {
     assert cipher != null;
     assert cipher.size() != 0;
 
-    @SuppressWarnings("unchecked") // disables the warning due to the absence of the type in the arraylist
-    ArrayList<Byte>[] subsequences = new ArrayList[keyLength];
-    byte[] key = new byte[keyLength]; // stores the key once found
+    return vigenereFindKey(ByteSequence.of(cipher), keyLength);
+  }
 
-    for (int i = 0; i < keyLength; ++i) {
-      ArrayList<Byte> newSubsequence = new ArrayList<Byte>(); // creates a list of characters that share the same key
-      for (int j = 0; j < cipher.size(); ++j) { // itereates over the list
-        int modulo = j % keyLength; // calulates the modulo to know if they have the same encryption key
-        if (modulo == i) // check for the modulo
-          newSubsequence.add(cipher.get(j)); // adds it to the subsequence with the same key
-      }
-      subsequences[i] = (newSubsequence);
-    }
+  /**
+   * Same as {@link #vigenereFindKey(List, int)} without boxing the bytes : the
+   * histograms of all the columns of the cipher (the bytes encoded with the same
+   * letter of the key) are filled in a single pass, and every letter of the key
+   * is found from the histogram of its column, nothing is copied
+   * 
+   * @param cipher    the encoded text without space
+   * @param keyLength the length of the key we want to find
+   * @return the inverse key to decode the Vigenere cipher text
+   */
+  public static byte[] vigenereFindKey(ByteSequence cipher, int keyLength) {
+    assert cipher != null;
+    assert cipher.size() != 0;
 
-    for (int i = 0; i < keyLength; ++i) { // just a looping to convert the ArrayList<Byte> into the array byte[]
-      byte[] primitiveArray = new byte[subsequences[i].size()];
-      for (int j = 0; j < subsequences[i].size(); ++j) {
-        primitiveArray[j] = subsequences[i].get(j); // not-so-autounboxing
-      }
-      key[i] = Decrypt.caesarWithFrequencies(primitiveArray); // deciphering each individual sequence with caesar
+    byte[] key = new byte[keyLength]; // stores the key once found
+    FrequencyHistogram[] columns = columnHistograms(cipher, new int[] { keyLength })[0];
+    for (int i = 0; i < keyLength; ++i) {
+      key[i] = caesarFindKey(columns[i]); // deciphering each individual sequence with caesar
     }
 
     return key;
@@ -411,6 +835,82 @@ public class Decrypt {
 
   }
 
+  /**
+   * Finds the key for several candidate key lengths at once, and keeps the one
+   * whose columns are the closest to English. The histograms of the columns of
+   * every key length are filled in a single pass over the cipher. A multiple of
+   * the right length fits as well as the length itself, so when two keys score
+   * almost the same the shorter one is kept.
+   * 
+   * @param cipher     the encoded text without space
+   * @param keyLengths the candidate key lengths
+   * @return the inverse key to decode the Vigenere cipher text, empty if there
+   *         is no candidate
+   */
+  public static byte[] vigenereFindKey(ByteSequence cipher, int[] keyLengths) {
+    assert cipher != null;
+    assert cipher.size() != 0;
+    assert keyLengths != null;
+
+    FrequencyHistogram[][] columns = columnHistograms(cipher, keyLengths);
+    byte[][] keys = new byte[keyLengths.length][];
+    double[] scores = new double[keyLengths.length];
+    double bestScore = 0.0;
+    for (int c = 0; c < keyLengths.length; ++c) {
+      keys[c] = new byte[keyLengths[c]];
+      for (int i = 0; i < keyLengths[c]; ++i) {
+        double[] scalarProducts = columns[c][i].scalarProducts();
+        keys[c][i] = caesarKeyFromScalarProducts(scalarProducts);
+        double maximum = 0.0;
+        for (double scalarProduct : scalarProducts) {
+          maximum = Math.max(maximum, scalarProduct);
+        }
+        scores[c] += maximum; // counts are not normalized, every length sums over the whole cipher
+      }
+      bestScore = Math.max(bestScore, scores[c]);
+    }
+
+    int best = -1;
+    for (int c = 0; c < keyLengths.length; ++c) { // shortest key close enough to the best score
+      if (scores[c] >= bestScore * (1 - KEY_LENGTH_TOLERANCE) && (best == -1 || keyLengths[c] < keyLengths[best])) {
+        best = c;
+      }
+    }
+    return (best == -1) ? new byte[0] : keys[best];
+  }
+
+  /**
+   * Builds the histograms of the columns of the cipher (the bytes encoded with
+   * the same letter of the key) for several key lengths, in a single pass and
+   * without copying the columns
+   * 
+   * @param cipher     the encoded text without space
+   * @param keyLengths the key lengths
+   * @return for each key length, the histogram of each column
+   */
+  private static FrequencyHistogram[][] columnHistograms(ByteSequence cipher, int[] keyLengths) {
+    FrequencyHistogram[][] columns = new FrequencyHistogram[keyLengths.length][];
+    for (int c = 0; c < keyLengths.length; ++c) {
+      assert keyLengths[c] > 0;
+      columns[c] = new FrequencyHistogram[keyLengths[c]];
+      for (int i = 0; i < keyLengths[c]; ++i) {
+        columns[c][i] = new FrequencyHistogram();
+      }
+    }
+
+    int[] positions = new int[keyLengths.length]; // column of the current byte for each key length
+    for (int j = 0; j < cipher.size(); ++j) {
+      byte b = cipher.get(j);
+      for (int c = 0; c < keyLengths.length; ++c) {
+        columns[c][positions[c]].add(b);
+        if (++positions[c] == keyLengths[c]) {
+          positions[c] = 0;
+        }
+      }
+    }
+    return columns;
+  }
+
   /**
    * Takes the original key and return a key that can be used to decode the
    * cipherText
@@ -445,31 +945,295 @@ public class Decrypt {
     assert iv != null;
     assert iv.length != 0;
 
-    // almost the same comments of the cbc encryption
-    // go there for a more precise description
+    byte[] decihperedText = new byte[cipher.length];
+    int blocks = (cipher.length + iv.length - 1) / iv.length; // the last block can be shorter
+    decryptCBCBlocks(cipher, decihperedText, iv, 0, blocks);
+    return decihperedText;
+  }
 
-    final int BLOCKSIZE = iv.length;
+  /**
+   * Method used to decode a String encoded following the CBC pattern, using
+   * several threads. Each clear block only depends on the ciphered block and the
+   * one before it, so ranges of blocks are decoded independently.
+   * 
+   * @param cipher the byte array representing the encoded text
+   * @param iv     the pad of size BLOCKSIZE we use to start the chain encoding
+   * @return the clear text
+   */
+  public static byte[] decryptCBCParallel(byte[] cipher, byte[] iv) {
+    return decryptCBCParallel(cipher, iv, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Method used to decode a String encoded following the CBC pattern, using the
+   * threads of a pool, see {@link #decryptCBCParallel(byte[], byte[])}
+   * 
+   * @param cipher the byte array representing the encoded text
+   * @param iv     the pad of size BLOCKSIZE we use to start the chain encoding
+   * @param pool   the pool running the decoding
+   * @return the clear text
+   */
+  public static byte[] decryptCBCParallel(byte[] cipher, byte[] iv, ForkJoinPool pool) {
+    assert cipher != null;
+    assert cipher.length != 0;
+    assert iv != null;
+    assert iv.length != 0;
 
     byte[] decihperedText = new byte[cipher.length];
-    byte[] key = Arrays.copyOf(iv, BLOCKSIZE);
+    int blocks = (cipher.length + iv.length - 1) / iv.length;
+    int blocksPerTask = Math.max(1, CBC_BYTES_PER_TASK / iv.length);
+    pool.invoke(new CBCBlocks(cipher, decihperedText, iv, 0, blocks, blocksPerTask));
+    return decihperedText;
+  }
 
-    int iterationsRequired = (int) Math.ceil((double) cipher.length / BLOCKSIZE);
-    int currentIteration = 0;
+  /**
+   * Decodes a range of CBC blocks. Every block is XORed with the ciphered block
+   * before it (the IV for the first one), so the range does not depend on the
+   * blocks decoded before.
+   * 
+   * @param cipher     the byte array representing the encoded text
+   * @param plain      the array receiving the clear text, at the same indices
+   * @param iv         the pad of size BLOCKSIZE used to start the chain encoding
+   * @param firstBlock the index of the first block to decode
+   * @param lastBlock  the index after the last block to decode
+   */
+  public static void decryptCBCBlocks(byte[] cipher, byte[] plain, byte[] iv, int firstBlock, int lastBlock) {
+    assert cipher != null && plain != null && iv != null;
+    assert plain.length >= cipher.length;
+    assert firstBlock >= 0 && firstBlock <= lastBlock;
 
-    while (currentIteration < iterationsRequired) {
-      int startIndex = currentIteration * BLOCKSIZE;
-      int endIndex = (currentIteration + 1) * BLOCKSIZE;
-      byte[] decipheredPart = Arrays.copyOfRange(cipher, startIndex, endIndex); // cuts the array to decipher the block
+    final int BLOCKSIZE = iv.length;
 
-      decipheredPart = Encrypt.oneTimePad(decipheredPart, key);
-      key = Arrays.copyOfRange(cipher, startIndex, endIndex); // updates the key with the new deciphered block
-      for (int i = startIndex; i < decihperedText.length; ++i) { // store the result of the deciphering
-        decihperedText[i] = decipheredPart[i % BLOCKSIZE];
+    for (int block = firstBlock; block < lastBlock; ++block) {
+      int startIndex = block * BLOCKSIZE; // determine the start of each block
+      int endIndex = Math.min(startIndex + BLOCKSIZE, cipher.length); // the last block can be shorter
+      for (int i = startIndex; i < endIndex; ++i) { // only the bytes of this block
+        byte previous = (block == 0) ? iv[i - startIndex] : cipher[i - BLOCKSIZE];
+        plain[i] = (byte) (cipher[i] ^ previous);
       }
-      ++currentIteration;
     }
+  }
 
-    return decihperedText;
+  /**
+   * CBC decoding of a part of an array into another one, without allocating.
+   * Source and destination can be the same array, to decode in place. The chain
+   * holds the last ciphered block (the IV at the start of a message) and is
+   * updated as the bytes are decoded, so that a message can be decoded in
+   * several parts.
+   * 
+   * @param src           the array containing the bytes to decode
+   * @param srcOff        the index of the first byte to decode
+   * @param dst           the array receiving the clear text
+   * @param dstOff        the index where the first decoded byte is written
+   * @param len           the number of bytes to decode
+   * @param chain         the last ciphered block, of size BLOCKSIZE, updated
+   * @param chainPosition the position of the first byte inside its block
+   * @return the position inside its block of the next byte to decode
+   */
+  public static int decryptCBC(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte[] chain,
+      int chainPosition) {
+    assert src != null && dst != null;
+    assert srcOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && dstOff + len <= dst.length;
+    assert chain != null && chain.length != 0;
+    assert chainPosition >= 0 && chainPosition < chain.length;
+
+    // almost the same comments of the cbc encryption
+    // go there for a more precise description
+    int blockPointer = chainPosition;
+    for (int i = 0; i < len; ++i) {
+      byte ciphered = src[srcOff + i]; // read before writing, in case of decoding in place
+      dst[dstOff + i] = (byte) (ciphered ^ chain[blockPointer]);
+      chain[blockPointer] = ciphered; // the next block was chained with this ciphered one
+      if (++blockPointer == chain.length) {
+        blockPointer = 0;
+      }
+    }
+    return blockPointer;
+  }
+
+  /**
+   * CBC decoding of the remaining bytes of a buffer into another one (heap or
+   * direct), see {@link #decryptCBC(byte[], int, byte[], int, int, byte[], int)}.
+   * The positions of both buffers are moved past the bytes processed.
+   * 
+   * @param src           the buffer containing the bytes to decode
+   * @param dst           the buffer receiving the clear text
+   * @param chain         the last ciphered block, of size BLOCKSIZE, updated
+   * @param chainPosition the position of the first byte inside its block
+   * @return the position inside its block of the next byte to decode
+   */
+  public static int decryptCBC(ByteBuffer src, ByteBuffer dst, byte[] chain, int chainPosition) {
+    assert dst.remaining() >= src.remaining();
+
+    int len = src.remaining();
+    int blockPointer = chainPosition;
+    if (src.hasArray() && dst.hasArray()) {
+      blockPointer = decryptCBC(src.array(), src.arrayOffset() + src.position(), dst.array(),
+          dst.arrayOffset() + dst.position(), len, chain, chainPosition);
+    } else {
+      for (int i = 0; i < len; ++i) {
+        byte ciphered = src.get(src.position() + i);
+        dst.put(dst.position() + i, (byte) (ciphered ^ chain[blockPointer]));
+        chain[blockPointer] = ciphered;
+        if (++blockPointer == chain.length) {
+          blockPointer = 0;
+        }
+      }
+    }
+    Encrypt.advance(src, dst, len);
+    return blockPointer;
+  }
+
+  /**
+   * Task decoding a range of CBC blocks, splitting it in two halves while it is
+   * too large
+   */
+  private static class CBCBlocks extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] cipher;
+    private final byte[] plain;
+    private final byte[] iv;
+    private final int firstBlock;
+    private final int lastBlock;
+    private final int blocksPerTask;
+
+    CBCBlocks(byte[] cipher, byte[] plain, byte[] iv, int firstBlock, int lastBlock, int blocksPerTask) {
+      this.cipher = cipher;
+      this.plain = plain;
+      this.iv = iv;
+      this.firstBlock = firstBlock;
+      this.lastBlock = lastBlock;
+      this.blocksPerTask = blocksPerTask;
+    }
+
+    @Override
+    protected void compute() {
+      if (lastBlock - firstBlock <= blocksPerTask) {
+        decryptCBCBlocks(cipher, plain, iv, firstBlock, lastBlock);
+        return;
+      }
+      int middle = (firstBlock + lastBlock) >>> 1;
+      invokeAll(new CBCBlocks(cipher, plain, iv, firstBlock, middle, blocksPerTask),
+          new CBCBlocks(cipher, plain, iv, middle, lastBlock, blocksPerTask));
+    }
+  }
+
+  // -----------------------Basic CTR-------------------------
+
+  /**
+   * Method used to decode a String encoded following the CTR pattern, see
+   * {@link Encrypt#ctr(byte[], byte[])}
+   * 
+   * @param cipher the byte array representing the encoded text
+   * @param iv     the pad of size BLOCKSIZE the counter is added to
+   * @return the clear text
+   */
+  public static byte[] decryptCTR(byte[] cipher, byte[] iv) {
+    assert cipher != null;
+    assert cipher.length != 0;
+    assert iv != null;
+    assert iv.length != 0;
+
+    byte[] decipheredText = new byte[cipher.length];
+    decryptCTR(cipher, 0, decipheredText, 0, cipher.length, iv, 0);
+    return decipheredText;
+  }
+
+  /**
+   * Method used to decode a String encoded following the CTR pattern, using
+   * several threads. Each byte only depends on its position, so ranges of the
+   * cipher are decoded independently.
+   * 
+   * @param cipher the byte array representing the encoded text
+   * @param iv     the pad of size BLOCKSIZE the counter is added to
+   * @return the clear text
+   */
+  public static byte[] decryptCTRParallel(byte[] cipher, byte[] iv) {
+    return decryptCTRParallel(cipher, iv, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Method used to decode a String encoded following the CTR pattern, using the
+   * threads of a pool, see {@link #decryptCTRParallel(byte[], byte[])}
+   * 
+   * @param cipher the byte array representing the encoded text
+   * @param iv     the pad of size BLOCKSIZE the counter is added to
+   * @param pool   the pool running the decoding
+   * @return the clear text
+   */
+  public static byte[] decryptCTRParallel(byte[] cipher, byte[] iv, ForkJoinPool pool) {
+    assert cipher != null;
+    assert cipher.length != 0;
+    assert iv != null;
+    assert iv.length != 0;
+
+    byte[] decipheredText = new byte[cipher.length];
+    pool.invoke(new CTRRange(cipher, decipheredText, iv, 0, cipher.length));
+    return decipheredText;
+  }
+
+  /**
+   * CTR decoding of any part of a message, without reading the bytes before it.
+   * Source and destination can be the same array, to decode in place.
+   * 
+   * @param src      the array containing the bytes to decode
+   * @param srcOff   the index of the first byte to decode
+   * @param dst      the array receiving the clear text
+   * @param dstOff   the index where the first decoded byte is written
+   * @param len      the number of bytes to decode
+   * @param iv       the pad of size BLOCKSIZE the counter is added to
+   * @param position the index of the first byte to decode in the whole message
+   */
+  public static void decryptCTR(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte[] iv, long position) {
+    Encrypt.ctr(src, srcOff, dst, dstOff, len, iv, position); // the same key stream is XORed again
+  }
+
+  /**
+   * CTR decoding of the remaining bytes of a buffer into another one (heap or
+   * direct), see {@link #decryptCTR(byte[], int, byte[], int, int, byte[], long)}.
+   * The positions of both buffers are moved past the bytes processed.
+   * 
+   * @param src      the buffer containing the bytes to decode
+   * @param dst      the buffer receiving the clear text
+   * @param iv       the pad of size BLOCKSIZE the counter is added to
+   * @param position the index of the first byte to decode in the whole message
+   */
+  public static void decryptCTR(ByteBuffer src, ByteBuffer dst, byte[] iv, long position) {
+    Encrypt.ctr(src, dst, iv, position);
+  }
+
+  /**
+   * Task decoding a range of a CTR cipher, splitting it in two halves while it
+   * is too large
+   */
+  private static class CTRRange extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] cipher;
+    private final byte[] plain;
+    private final byte[] iv;
+    private final int from;
+    private final int to;
+
+    CTRRange(byte[] cipher, byte[] plain, byte[] iv, int from, int to) {
+      this.cipher = cipher;
+      this.plain = plain;
+      this.iv = iv;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= CTR_BYTES_PER_TASK) {
+        decryptCTR(cipher, from, plain, from, to - from, iv, from);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new CTRRange(cipher, plain, iv, from, middle), new CTRRange(cipher, plain, iv, middle, to));
+    }
   }
 
 }
@@ -1,5 +1,6 @@
 package crypto;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 import java.util.Arrays;
 
@@ -10,6 +11,7 @@ public class Encrypt {
   public static final int XOR = 2;
   public static final int ONETIME = 3;
   public static final int CBC = 4;
+  public static final int CTR = 5;
 
   public static final byte SPACE = 32;
 
@@ -17,6 +19,11 @@ public class Encrypt {
 
   final static Random rand = new Random();
 
+  // loops of Caesar, XOR and the one time pad, vectorized when possible
+  private static final CipherKernels KERNELS = CipherKernels.load();
+
+  private static final int CTR_STREAM_BYTES = 1 << 12; // key stream generated at once by ctr
+
   // -----------------------General-------------------------
 
   /**
@@ -26,12 +33,13 @@ public class Encrypt {
    * @param message the message to encode already cleaned
    * @param key     the key used to encode
    * @param type    the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR,
-   *                3 = One time pad, 4 = CBC
+   *                3 = One time pad, 4 = CBC, 5 = CTR
    * 
    * @return an encoded String if the method is called with an unknown type of
    *         algorithm, it returns the original message
    */
   public static String encrypt(String message, String key, int type) {
+    long start = Metrics.start();
     String encodedString = "";
     byte[] bytesMessage = Helper.stringToBytes(message);
     byte[] bytesKey = Helper.stringToBytes(key);
@@ -46,13 +54,51 @@ public class Encrypt {
       encoded = oneTimePad(bytesMessage, bytesKey);
     } else if (type == CBC) {
       encoded = cbc(bytesMessage, bytesKey);
-    } else if (type > 4 || type < 0) {
+    } else if (type == CTR) {
+      encoded = ctr(bytesMessage, bytesKey);
+    } else if (type > CTR || type < 0) {
       return message;
     }
     encodedString = Helper.bytesToString(encoded);
+    Metrics.stop(Metrics.Operation.ENCRYPT, type, bytesMessage.length, start);
     return encodedString;
   }
 
+  /**
+   * Encodes a whole batch of messages with the same key, each message starting
+   * from the beginning of the key as with
+   * {@link #encrypt(String, String, int)}. Caesar and XOR encode every byte on
+   * its own and go through the packed messages in a single pass, the other
+   * methods encode the messages one after the other with a
+   * {@link CipherSession}.
+   * 
+   * @param batch the messages to encode
+   * @param key   the key used to encode
+   * @param type  the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR,
+   *              3 = One time pad, 4 = CBC, 5 = CTR
+   * @return the encoded messages, with the same layout as the batch
+   */
+  public static MessageBatch encryptBatch(MessageBatch batch, byte[] key, int type) {
+    assert batch != null;
+    assert key != null;
+    assert key.length != 0;
+
+    byte[] data = batch.data();
+    byte[] encoded = new byte[data.length];
+    int length = batch.offset(batch.size()); // end of the last message
+    if (type == CAESAR) {
+      caesar(data, 0, encoded, 0, length, key[0], false);
+    } else if (type == XOR) {
+      xor(data, 0, encoded, 0, length, key[0], false);
+    } else {
+      CipherSession session = new CipherSession(type, key, false);
+      for (int i = 0; i < batch.size(); ++i) {
+        session.encrypt(data, batch.offset(i), encoded, batch.offset(i), batch.length(i));
+      }
+    }
+    return new MessageBatch(encoded, batch.offsets());
+  }
+
   // -----------------------Caesar-------------------------
 
   /**
@@ -70,25 +116,7 @@ public class Encrypt {
 
     // new array to store the result
     byte cipher[] = new byte[plainText.length];
-
-    // for cycle that adds the key to the original byte
-    for (int i = 0; i < plainText.length; i++) {
-
-      if (spaceEncoding) // version with space encoding
-        cipher[i] = (byte) (plainText[i] + key);
-
-      else { // version without space encoding
-        switch (plainText[i]) {
-          case SPACE:
-            cipher[i] = SPACE;
-            break;
-          default:
-            cipher[i] = (byte) (plainText[i] + key);
-            break;
-        }
-      }
-    }
-
+    caesar(plainText, 0, cipher, 0, plainText.length, key, spaceEncoding);
     return cipher;
 
   }
@@ -105,6 +133,53 @@ public class Encrypt {
     return caesar(plainText, key, false);
   }
 
+  /**
+   * Caesar encoding of a part of an array into another one, without allocating.
+   * Source and destination can be the same array, to encode in place.
+   * 
+   * @param src           the array containing the bytes to encode
+   * @param srcOff        the index of the first byte to encode
+   * @param dst           the array receiving the result
+   * @param dstOff        the index where the first encoded byte is written
+   * @param len           the number of bytes to encode
+   * @param key           the byte corresponding to the char we use to shift
+   * @param spaceEncoding if false, then spaces are not encoded
+   */
+  public static void caesar(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte key,
+      boolean spaceEncoding) {
+    assert src != null && dst != null;
+    assert srcOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && dstOff + len <= dst.length;
+
+    KERNELS.caesar(src, srcOff, dst, dstOff, len, key, spaceEncoding);
+  }
+
+  /**
+   * Caesar encoding of the remaining bytes of a buffer into another one (heap or
+   * direct). The positions of both buffers are moved past the bytes processed.
+   * Source and destination can be the same buffer, to encode in place.
+   * 
+   * @param src           the buffer containing the bytes to encode
+   * @param dst           the buffer receiving the result
+   * @param key           the byte corresponding to the char we use to shift
+   * @param spaceEncoding if false, then spaces are not encoded
+   */
+  public static void caesar(ByteBuffer src, ByteBuffer dst, byte key, boolean spaceEncoding) {
+    assert dst.remaining() >= src.remaining();
+
+    int len = src.remaining();
+    if (src.hasArray() && dst.hasArray()) {
+      caesar(src.array(), src.arrayOffset() + src.position(), dst.array(), dst.arrayOffset() + dst.position(), len,
+          key, spaceEncoding);
+    } else {
+      for (int i = 0; i < len; i++) {
+        byte b = src.get(src.position() + i);
+        dst.put(dst.position() + i, (!spaceEncoding && b == SPACE) ? SPACE : (byte) (b + key));
+      }
+    }
+    advance(src, dst, len);
+  }
+
   // -----------------------XOR-------------------------
 
   /**
@@ -117,27 +192,12 @@ public class Encrypt {
    */
 
   public static byte[] xor(byte[] plainText, byte key, boolean spaceEncoding) {
-    // array that will store the result, deep copy of the argument plain text
+    // array that will store the result
     assert plainText != null;
     assert plainText.length != 0;
 
-    byte[] cipherText = Arrays.copyOf(plainText, plainText.length);
-
-    // cycle that apply xor with the bitwise operator to every byte in cipherText
-    for (int i = 0; i < cipherText.length; i++) {
-      if (spaceEncoding) { // with space encoding
-        cipherText[i] = (byte) (plainText[i] ^ key);
-      } else {
-        switch (plainText[i]) { // without space encoding
-          case SPACE:
-            cipherText[i] = SPACE;
-            break;
-          default:
-            cipherText[i] = (byte) (plainText[i] ^ key);
-        }
-      }
-    }
-
+    byte[] cipherText = new byte[plainText.length];
+    xor(plainText, 0, cipherText, 0, plainText.length, key, spaceEncoding);
     return cipherText;
   }
 
@@ -152,6 +212,104 @@ public class Encrypt {
   public static byte[] xor(byte[] plainText, byte key) {
     return xor(plainText, key, false);
   }
+
+  /**
+   * XOR encoding of a part of an array into another one, without allocating.
+   * Source and destination can be the same array, to encode in place.
+   * 
+   * @param src           the array containing the bytes to encode
+   * @param srcOff        the index of the first byte to encode
+   * @param dst           the array receiving the result
+   * @param dstOff        the index where the first encoded byte is written
+   * @param len           the number of bytes to encode
+   * @param key           the byte we will use to XOR
+   * @param spaceEncoding if false, then spaces are not encoded
+   */
+  public static void xor(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte key, boolean spaceEncoding) {
+    assert src != null && dst != null;
+    assert srcOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && dstOff + len <= dst.length;
+
+    KERNELS.xor(src, srcOff, dst, dstOff, len, key, spaceEncoding);
+  }
+
+  /**
+   * XOR encoding of the remaining bytes of a buffer into another one (heap or
+   * direct). The positions of both buffers are moved past the bytes processed.
+   * Source and destination can be the same buffer, to encode in place.
+   * 
+   * @param src           the buffer containing the bytes to encode
+   * @param dst           the buffer receiving the result
+   * @param key           the byte we will use to XOR
+   * @param spaceEncoding if false, then spaces are not encoded
+   */
+  public static void xor(ByteBuffer src, ByteBuffer dst, byte key, boolean spaceEncoding) {
+    assert dst.remaining() >= src.remaining();
+
+    int len = src.remaining();
+    if (src.hasArray() && dst.hasArray()) {
+      xor(src.array(), src.arrayOffset() + src.position(), dst.array(), dst.arrayOffset() + dst.position(), len, key,
+          spaceEncoding);
+    } else {
+      for (int i = 0; i < len; i++) {
+        byte b = src.get(src.position() + i);
+        dst.put(dst.position() + i, (!spaceEncoding && b == SPACE) ? SPACE : (byte) (b ^ key));
+      }
+    }
+    advance(src, dst, len);
+  }
+
+  /**
+   * Method to encode a byte array using a XOR with a key of several bytes,
+   * repeated along the message. Encodes spaces, and decodes as well.
+   * 
+   * @param plainText the byte array representing the string to encode
+   * @param key       the bytes we will use to XOR, one after the other
+   * @return an encoded byte array
+   */
+  public static byte[] xor(byte[] plainText, byte[] key) {
+    assert plainText != null;
+    assert plainText.length != 0;
+    assert key != null;
+    assert key.length != 0;
+
+    byte[] cipherText = new byte[plainText.length];
+    xor(plainText, 0, cipherText, 0, plainText.length, key, 0);
+    return cipherText;
+  }
+
+  /**
+   * Repeating key XOR encoding of a part of an array into another one, without
+   * allocating. Source and destination can be the same array, to encode in
+   * place. The encoding can start anywhere in the key, so that a message can be
+   * encoded in several parts.
+   * 
+   * @param src         the array containing the bytes to encode
+   * @param srcOff      the index of the first byte to encode
+   * @param dst         the array receiving the result
+   * @param dstOff      the index where the first encoded byte is written
+   * @param len         the number of bytes to encode
+   * @param key         the bytes we will use to XOR, one after the other
+   * @param keyPosition the index in the key used for the first encoded byte
+   * @return the index in the key to use for the next encoded byte
+   */
+  public static int xor(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte[] key, int keyPosition) {
+    assert src != null && dst != null;
+    assert srcOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && dstOff + len <= dst.length;
+    assert key != null && key.length != 0;
+    assert keyPosition >= 0 && keyPosition < key.length;
+
+    int keyPointer = keyPosition;
+    for (int i = 0; i < len; ++i) {
+      dst[dstOff + i] = (byte) (src[srcOff + i] ^ key[keyPointer]);
+      if (++keyPointer == key.length) {
+        keyPointer = 0;
+      }
+    }
+    return keyPointer;
+  }
+
   // -----------------------Vigenere-------------------------
 
   /**
@@ -173,28 +331,7 @@ public class Encrypt {
 
     // empty array to store the result
     byte cipherText[] = new byte[plainText.length];
-
-    if (spaceEncoding) { // with space encoding
-      for (int i = 0; i < plainText.length; i++) {
-        int keywordPointer = i % keyword.length; // tells which part of the key to use
-        cipherText[i] = (byte) (plainText[i] + keyword[keywordPointer]); // basically caesar
-      }
-    } else { // without space encoding
-      int encodedLettersCounter = 0; // keep track only of encoded characters that are not 32
-      for (int i = 0; i < plainText.length; i++) {
-        int keywordPointer = encodedLettersCounter % keyword.length; // tells which part of the key to use
-        switch (plainText[i]) {
-          case SPACE:
-            cipherText[i] = SPACE;
-            break;
-          default:
-            cipherText[i] = (byte) (plainText[i] + keyword[keywordPointer]); // basically caesar
-            ++encodedLettersCounter;
-            break;
-        }
-      }
-    }
-
+    vigenere(plainText, 0, cipherText, 0, plainText.length, keyword, 0, spaceEncoding);
     return cipherText;
   }
 
@@ -212,6 +349,87 @@ public class Encrypt {
     return vigenere(plainText, keyword, false);
   }
 
+  /**
+   * Vigenere encoding of a part of an array into another one, without
+   * allocating. Source and destination can be the same array, to encode in
+   * place. The encoding can start anywhere in the keyword, so that a message can
+   * be encoded in several parts.
+   * 
+   * @param src           the array containing the bytes to encode
+   * @param srcOff        the index of the first byte to encode
+   * @param dst           the array receiving the result
+   * @param dstOff        the index where the first encoded byte is written
+   * @param len           the number of bytes to encode
+   * @param keyword       the byte array representing the key used to perform the
+   *                      shift
+   * @param keyPosition   the index in the keyword used for the first encoded byte
+   * @param spaceEncoding if false, then spaces are not encoded and do not move
+   *                      the keyword
+   * @return the index in the keyword to use for the next encoded byte
+   */
+  public static int vigenere(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte[] keyword,
+      int keyPosition, boolean spaceEncoding) {
+    assert src != null && dst != null;
+    assert srcOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && dstOff + len <= dst.length;
+    assert keyword != null && keyword.length != 0;
+    assert keyPosition >= 0 && keyPosition < keyword.length;
+
+    int keywordPointer = keyPosition; // tells which part of the key to use
+    for (int i = 0; i < len; i++) {
+      byte b = src[srcOff + i];
+      if (!spaceEncoding && b == SPACE) { // keep track only of encoded characters that are not 32
+        dst[dstOff + i] = SPACE;
+      } else {
+        dst[dstOff + i] = (byte) (b + keyword[keywordPointer]); // basically caesar
+        if (++keywordPointer == keyword.length) {
+          keywordPointer = 0;
+        }
+      }
+    }
+    return keywordPointer;
+  }
+
+  /**
+   * Vigenere encoding of the remaining bytes of a buffer into another one (heap
+   * or direct). The positions of both buffers are moved past the bytes
+   * processed. Source and destination can be the same buffer, to encode in place.
+   * 
+   * @param src           the buffer containing the bytes to encode
+   * @param dst           the buffer receiving the result
+   * @param keyword       the byte array representing the key used to perform the
+   *                      shift
+   * @param keyPosition   the index in the keyword used for the first encoded byte
+   * @param spaceEncoding if false, then spaces are not encoded and do not move
+   *                      the keyword
+   * @return the index in the keyword to use for the next encoded byte
+   */
+  public static int vigenere(ByteBuffer src, ByteBuffer dst, byte[] keyword, int keyPosition,
+      boolean spaceEncoding) {
+    assert dst.remaining() >= src.remaining();
+
+    int len = src.remaining();
+    int keywordPointer = keyPosition;
+    if (src.hasArray() && dst.hasArray()) {
+      keywordPointer = vigenere(src.array(), src.arrayOffset() + src.position(), dst.array(),
+          dst.arrayOffset() + dst.position(), len, keyword, keyPosition, spaceEncoding);
+    } else {
+      for (int i = 0; i < len; i++) {
+        byte b = src.get(src.position() + i);
+        if (!spaceEncoding && b == SPACE) {
+          dst.put(dst.position() + i, SPACE);
+        } else {
+          dst.put(dst.position() + i, (byte) (b + keyword[keywordPointer]));
+          if (++keywordPointer == keyword.length) {
+            keywordPointer = 0;
+          }
+        }
+      }
+    }
+    advance(src, dst, len);
+    return keywordPointer;
+  }
+
   // -----------------------One Time Pad-------------------------
 
   /**
@@ -229,14 +447,55 @@ public class Encrypt {
     assert plainText.length != 0;
     assert pad.length != 0;
 
-    // deepcopy of plaintext to get the desired result
-    byte[] cipherText = Arrays.copyOf(plainText, plainText.length);
+    byte[] cipherText = new byte[plainText.length];
+    oneTimePad(plainText, 0, pad, 0, cipherText, 0, plainText.length);
+    return cipherText;
+  }
 
-    for (int i = 0; i < cipherText.length; i++) {
-      cipherText[i] = (byte) (plainText[i] ^ pad[i]); // basically xor
-    }
+  /**
+   * One time pad encoding of a part of an array into another one, without
+   * allocating. Source and destination can be the same array, to encode in place.
+   * 
+   * @param src    the array containing the bytes to encode
+   * @param srcOff the index of the first byte to encode
+   * @param pad    the one time pad
+   * @param padOff the index in the pad used for the first byte
+   * @param dst    the array receiving the result
+   * @param dstOff the index where the first encoded byte is written
+   * @param len    the number of bytes to encode
+   */
+  public static void oneTimePad(byte[] src, int srcOff, byte[] pad, int padOff, byte[] dst, int dstOff, int len) {
+    assert src != null && pad != null && dst != null;
+    assert srcOff >= 0 && padOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && padOff + len <= pad.length && dstOff + len <= dst.length;
 
-    return cipherText;
+    KERNELS.oneTimePad(src, srcOff, pad, padOff, dst, dstOff, len);
+  }
+
+  /**
+   * One time pad encoding of the remaining bytes of a buffer into another one
+   * (heap or direct). The positions of both buffers are moved past the bytes
+   * processed. Source and destination can be the same buffer, to encode in place.
+   * 
+   * @param src    the buffer containing the bytes to encode
+   * @param pad    the one time pad
+   * @param padOff the index in the pad used for the first byte
+   * @param dst    the buffer receiving the result
+   */
+  public static void oneTimePad(ByteBuffer src, byte[] pad, int padOff, ByteBuffer dst) {
+    assert dst.remaining() >= src.remaining();
+    assert padOff + src.remaining() <= pad.length;
+
+    int len = src.remaining();
+    if (src.hasArray() && dst.hasArray()) {
+      oneTimePad(src.array(), src.arrayOffset() + src.position(), pad, padOff, dst.array(),
+          dst.arrayOffset() + dst.position(), len);
+    } else {
+      for (int i = 0; i < len; i++) {
+        dst.put(dst.position() + i, (byte) (src.get(src.position() + i) ^ pad[padOff + i]));
+      }
+    }
+    advance(src, dst, len);
   }
 
   // -----------------------Basic CBC-------------------------
@@ -255,29 +514,206 @@ public class Encrypt {
     assert iv != null;
     assert iv.length != 0;
 
-    final int BLOCKSIZE = iv.length; // a variable to keep track of lentgh of every block
-
     byte[] cihperedText = new byte[plainText.length]; // empty array to store every crytpted block
-    byte[] key = Arrays.copyOf(iv, BLOCKSIZE); // variable that keep track of the key
-
-    int iterationsRequired = (int) Math.ceil((double) plainText.length / BLOCKSIZE); // the number of iteration
-                                                                                     // required to encrypt
-    int currentIteration = 0; // just a counter to stop when it's done
-
-    while (currentIteration < iterationsRequired) { // cycle that encrypt every block
-      int startIndex = currentIteration * BLOCKSIZE; // determine the start of each block
-      int endIndex = (currentIteration + 1) * BLOCKSIZE; // determine the end of each block
-      byte[] cipheredPart = Arrays.copyOfRange(plainText, startIndex, endIndex); // cuts the array to encrypt just the
-                                                                                 // block
-      cipheredPart = Encrypt.oneTimePad(cipheredPart, key); // encrypt the block with otp
-      key = cipheredPart; // updates the key with the new ciphered block
-      for (int i = startIndex; i < cihperedText.length; ++i) { // store the encrypted block into cipheredText
-        cihperedText[i] = cipheredPart[i % BLOCKSIZE];
+    cbc(plainText, 0, cihperedText, 0, plainText.length, Arrays.copyOf(iv, iv.length), 0);
+    return cihperedText;
+  }
+
+  /**
+   * CBC encoding of a part of an array into another one, without allocating.
+   * Source and destination can be the same array, to encode in place. The chain
+   * holds the last ciphered block (the IV at the start of a message) and is
+   * updated as the bytes are encoded, so that a message can be encoded in
+   * several parts that do not have to end on a block boundary.
+   * 
+   * @param src           the array containing the bytes to encode
+   * @param srcOff        the index of the first byte to encode
+   * @param dst           the array receiving the result
+   * @param dstOff        the index where the first encoded byte is written
+   * @param len           the number of bytes to encode
+   * @param chain         the last ciphered block, of size BLOCKSIZE, updated
+   * @param chainPosition the position of the first byte inside its block
+   * @return the position inside its block of the next byte to encode
+   */
+  public static int cbc(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte[] chain, int chainPosition) {
+    assert src != null && dst != null;
+    assert srcOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && dstOff + len <= dst.length;
+    assert chain != null && chain.length != 0;
+    assert chainPosition >= 0 && chainPosition < chain.length;
+
+    int blockPointer = chainPosition;
+    for (int i = 0; i < len; ++i) {
+      byte ciphered = (byte) (src[srcOff + i] ^ chain[blockPointer]); // otp with the previous block
+      dst[dstOff + i] = ciphered;
+      chain[blockPointer] = ciphered; // the next block is chained with this one
+      if (++blockPointer == chain.length) {
+        blockPointer = 0;
       }
-      ++currentIteration;
     }
+    return blockPointer;
+  }
 
-    return cihperedText;
+  /**
+   * CBC encoding of the remaining bytes of a buffer into another one (heap or
+   * direct), see {@link #cbc(byte[], int, byte[], int, int, byte[], int)}. The
+   * positions of both buffers are moved past the bytes processed.
+   * 
+   * @param src           the buffer containing the bytes to encode
+   * @param dst           the buffer receiving the result
+   * @param chain         the last ciphered block, of size BLOCKSIZE, updated
+   * @param chainPosition the position of the first byte inside its block
+   * @return the position inside its block of the next byte to encode
+   */
+  public static int cbc(ByteBuffer src, ByteBuffer dst, byte[] chain, int chainPosition) {
+    assert dst.remaining() >= src.remaining();
+
+    int len = src.remaining();
+    int blockPointer = chainPosition;
+    if (src.hasArray() && dst.hasArray()) {
+      blockPointer = cbc(src.array(), src.arrayOffset() + src.position(), dst.array(),
+          dst.arrayOffset() + dst.position(), len, chain, chainPosition);
+    } else {
+      for (int i = 0; i < len; ++i) {
+        byte ciphered = (byte) (src.get(src.position() + i) ^ chain[blockPointer]);
+        dst.put(dst.position() + i, ciphered);
+        chain[blockPointer] = ciphered;
+        if (++blockPointer == chain.length) {
+          blockPointer = 0;
+        }
+      }
+    }
+    advance(src, dst, len);
+    return blockPointer;
+  }
+
+  // -----------------------Basic CTR-------------------------
+
+  /**
+   * Method applying a basic counter mode of XOR without encryption method : the
+   * message is XORed with a key stream made of blocks of the size of the IV,
+   * block n being the IV XORed with n written in its last bytes (big endian).
+   * Every byte only depends on its position, so any part of a message can be
+   * encoded or decoded on its own and in parallel. Encodes spaces, and decodes
+   * as well.
+   * 
+   * @param plainText the byte array representing the string to encode
+   * @param iv        the pad of size BLOCKSIZE the counter is added to
+   * @return an encoded byte array
+   */
+  public static byte[] ctr(byte[] plainText, byte[] iv) {
+    assert plainText != null;
+    assert plainText.length != 0;
+    assert iv != null;
+    assert iv.length != 0;
+
+    byte[] cipherText = new byte[plainText.length];
+    ctr(plainText, 0, cipherText, 0, plainText.length, iv, 0);
+    return cipherText;
+  }
+
+  /**
+   * CTR encoding of a part of a message into another array. Source and
+   * destination can be the same array, to encode in place. The key stream is
+   * generated CTR_STREAM_BYTES at a time (or less for a short part) and applied
+   * with the one time pad.
+   * 
+   * @param src      the array containing the bytes to encode
+   * @param srcOff   the index of the first byte to encode
+   * @param dst      the array receiving the result
+   * @param dstOff   the index where the first encoded byte is written
+   * @param len      the number of bytes to encode
+   * @param iv       the pad of size BLOCKSIZE the counter is added to
+   * @param position the index of the first byte to encode in the whole message
+   */
+  public static void ctr(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte[] iv, long position) {
+    assert src != null && dst != null;
+    assert srcOff >= 0 && dstOff >= 0 && len >= 0;
+    assert srcOff + len <= src.length && dstOff + len <= dst.length;
+    assert iv != null && iv.length != 0;
+    assert position >= 0;
+
+    int blockSize = iv.length;
+    long block = position / blockSize;
+    int blockPosition = (int) (position % blockSize);
+    long needed = ((long) blockPosition + len + blockSize - 1) / blockSize; // blocks touched by the bytes
+    int blocks = (int) Math.min(needed, Math.max(1, CTR_STREAM_BYTES / blockSize));
+    byte[] stream = new byte[blocks * blockSize];
+    int done = 0;
+    while (done < len) {
+      counterBlocks(iv, block, stream, blocks);
+      int length = Math.min(stream.length - blockPosition, len - done);
+      oneTimePad(src, srcOff + done, stream, blockPosition, dst, dstOff + done, length);
+      done += length;
+      block += blocks;
+      blockPosition = 0;
+    }
+  }
+
+  /**
+   * CTR encoding of the remaining bytes of a buffer into another one (heap or
+   * direct), see {@link #ctr(byte[], int, byte[], int, int, byte[], long)}. The
+   * positions of both buffers are moved past the bytes processed.
+   * 
+   * @param src      the buffer containing the bytes to encode
+   * @param dst      the buffer receiving the result
+   * @param iv       the pad of size BLOCKSIZE the counter is added to
+   * @param position the index of the first byte to encode in the whole message
+   */
+  public static void ctr(ByteBuffer src, ByteBuffer dst, byte[] iv, long position) {
+    assert dst.remaining() >= src.remaining();
+
+    int len = src.remaining();
+    if (src.hasArray() && dst.hasArray()) {
+      ctr(src.array(), src.arrayOffset() + src.position(), dst.array(), dst.arrayOffset() + dst.position(), len, iv,
+          position);
+    } else { // windows copied to the heap, with bulk transfers instead of a get and a put per byte
+      byte[] window = new byte[Math.min(len, CTR_STREAM_BYTES)];
+      ByteBuffer in = src.duplicate();
+      ByteBuffer out = dst.duplicate();
+      for (int done = 0, length; done < len; done += length) {
+        length = Math.min(window.length, len - done);
+        in.get(window, 0, length);
+        ctr(window, 0, window, 0, length, iv, position + done);
+        out.put(window, 0, length);
+      }
+    }
+    advance(src, dst, len);
+  }
+
+  /**
+   * Writes consecutive blocks of CTR key stream : the IV, with the number of the
+   * block XORed into its last bytes (at most 8, a shorter IV only keeps the low
+   * bytes of the counter and its key stream repeats sooner)
+   * 
+   * @param iv         the pad of size BLOCKSIZE the counter is added to
+   * @param firstBlock the number of the first block written
+   * @param stream     the array receiving the blocks, from its start
+   * @param blocks     the number of blocks written
+   */
+  static void counterBlocks(byte[] iv, long firstBlock, byte[] stream, int blocks) {
+    int blockSize = iv.length;
+    int counterBytes = Math.min(blockSize, Long.BYTES);
+    for (int b = 0; b < blocks; ++b) {
+      int end = (b + 1) * blockSize; // the counter ends with the block
+      System.arraycopy(iv, 0, stream, end - blockSize, blockSize);
+      long counter = firstBlock + b;
+      for (int j = 1; j <= counterBytes; ++j) {
+        stream[end - j] ^= (byte) counter;
+        counter >>>= Byte.SIZE;
+      }
+    }
+  }
+
+  /**
+   * Moves the positions of two buffers past the bytes processed, when the
+   * source and the destination are the same buffer it is only moved once
+   */
+  static void advance(ByteBuffer src, ByteBuffer dst, int len) {
+    src.position(src.position() + len);
+    if (dst != src) {
+      dst.position(dst.position() + len);
+    }
   }
 
   /**
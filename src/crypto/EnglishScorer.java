@@ -0,0 +1,46 @@
+package crypto;
+
+/**
+ * Scores a text with the English letter frequencies : every byte is given a
+ * weight (its frequency for the letters, a penalty for the bytes that can't be
+ * found in a cleaned text) and the score is the average weight.
+ */
+public class EnglishScorer implements PlaintextScorer {
+
+  public static final EnglishScorer INSTANCE = new EnglishScorer();
+
+  private static final double SPACE_WEIGHT = 0.15; // about one character out of six is a space in English
+  private static final double PENALTY = -0.1; // weight of the bytes that are not in [a-z ]
+
+  private final double[] weights = new double[Decrypt.ALPHABETSIZE];
+
+  private EnglishScorer() {
+    for (int i = 0; i < weights.length; ++i) {
+      weights[i] = PENALTY;
+    }
+    for (int j = 0; j < Decrypt.ENGLISHFREQUENCIES.length; ++j) {
+      weights['a' + j] = Decrypt.ENGLISHFREQUENCIES[j];
+    }
+    weights[Decrypt.SPACE] = SPACE_WEIGHT;
+  }
+
+  /**
+   * @param b a byte of clear text
+   * @return the weight of the byte in the score
+   */
+  public double weight(byte b) {
+    return weights[b & 0xFF];
+  }
+
+  @Override
+  public double score(byte[] text, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    double sum = 0;
+    for (int i = offset; i < offset + length; ++i) {
+      sum += weights[text[i] & 0xFF];
+    }
+    return sum / length;
+  }
+}
@@ -0,0 +1,227 @@
+package crypto;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Histogram of the bytes of a text, built in a single pass. The count of a byte
+ * b is stored at index (b & 0xFF), the same indexing used by
+ * {@link Decrypt#computeFrequencies(byte[])}. Bytes can be added and removed
+ * one by one (for sliding windows), and partial histograms can be merged.
+ */
+public class FrequencyHistogram {
+
+  private static final int PARALLEL_THRESHOLD = 1 << 16; // below this size a slice is counted on one thread
+
+  private final int[] counts = new int[Decrypt.ALPHABETSIZE];
+  private long total = 0; // number of bytes counted, spaces included
+
+  /**
+   * Builds the histogram of a whole byte array
+   *
+   * @param text the bytes to count
+   * @return the histogram
+   */
+  public static FrequencyHistogram of(byte[] text) {
+    return of(text, 0, text.length);
+  }
+
+  /**
+   * Builds the histogram of a part of a byte array
+   *
+   * @param text   the bytes to count
+   * @param offset the index of the first byte to count
+   * @param length the number of bytes to count
+   * @return the histogram
+   */
+  public static FrequencyHistogram of(byte[] text, int offset, int length) {
+    FrequencyHistogram histogram = new FrequencyHistogram();
+    histogram.addAll(text, offset, length);
+    return histogram;
+  }
+
+  /**
+   * Builds the histogram of a byte array by counting slices on several threads
+   * and merging the partial histograms
+   *
+   * @param text the bytes to count
+   * @return the histogram
+   */
+  public static FrequencyHistogram ofParallel(byte[] text) {
+    assert text != null;
+
+    return ForkJoinPool.commonPool().invoke(new SliceCount(text, 0, text.length));
+  }
+
+  /**
+   * Adds one byte to the histogram
+   *
+   * @param b the byte to add
+   */
+  public void add(byte b) {
+    ++counts[b & 0xFF];
+    ++total;
+  }
+
+  /**
+   * Removes one byte previously added to the histogram
+   *
+   * @param b the byte to remove
+   */
+  public void remove(byte b) {
+    assert counts[b & 0xFF] > 0;
+
+    --counts[b & 0xFF];
+    --total;
+  }
+
+  /**
+   * Adds a part of a byte array to the histogram
+   *
+   * @param text   the bytes to add
+   * @param offset the index of the first byte to add
+   * @param length the number of bytes to add
+   */
+  public void addAll(byte[] text, int offset, int length) {
+    assert text != null;
+    assert offset >= 0 && length >= 0 && offset + length <= text.length;
+
+    for (int i = offset; i < offset + length; ++i) {
+      ++counts[text[i] & 0xFF];
+    }
+    total += length;
+  }
+
+  /**
+   * Adds the counts of another histogram to this one
+   *
+   * @param other the histogram to merge
+   */
+  public void merge(FrequencyHistogram other) {
+    for (int i = 0; i < counts.length; ++i) {
+      counts[i] += other.counts[i];
+    }
+    total += other.total;
+  }
+
+  /**
+   * Removes all the counts
+   */
+  public void clear() {
+    Arrays.fill(counts, 0);
+    total = 0;
+  }
+
+  /**
+   * @param b a byte
+   * @return the number of times the byte was counted
+   */
+  public int count(byte b) {
+    return counts[b & 0xFF];
+  }
+
+  /**
+   * @return the number of bytes counted, spaces included
+   */
+  public long total() {
+    return total;
+  }
+
+  /**
+   * @return the number of bytes counted that are not spaces
+   */
+  public long nonSpaceTotal() {
+    return total - counts[Decrypt.SPACE];
+  }
+
+  /**
+   * Computes the frequencies of the characters that are not spaces, as done by
+   * {@link Decrypt#computeFrequencies(byte[])}
+   *
+   * @return the character frequencies, indexed by unsigned byte value
+   */
+  public float[] frequencies() {
+    float[] frequencies = new float[Decrypt.ALPHABETSIZE];
+    long notSpacesCounter = nonSpaceTotal();
+    for (int letter = 0; letter < frequencies.length; ++letter) {
+      if (letter == Decrypt.SPACE) // skip spaces
+        continue;
+      frequencies[letter] = (float) counts[letter] / notSpacesCounter;
+    }
+    return frequencies;
+  }
+
+  /**
+   * Computes for every possible position of the letter 'a' the scalar product
+   * between the English frequencies and the counts of this histogram. The
+   * counts are not divided by the total, which does not change the maximum.
+   *
+   * @return the 256 scalar products, see {@link Decrypt#caesarFindKey(float[])}
+   */
+  public double[] scalarProducts() {
+    double[] scalarProducts = new double[Decrypt.ALPHABETSIZE];
+    for (int i = 0; i < scalarProducts.length; ++i) {
+      for (int j = 0; j < Decrypt.ENGLISHFREQUENCIES.length; ++j) {
+        int letter = (i + j) & 0xFF;
+        if (letter != Decrypt.SPACE) { // spaces are not part of the frequencies
+          scalarProducts[i] += Decrypt.ENGLISHFREQUENCIES[j] * counts[letter];
+        }
+      }
+    }
+    return scalarProducts;
+  }
+
+  /**
+   * Adds the scalar products of this histogram to those of another part of the
+   * text, so that the scalar products of a growing sample can be updated with
+   * the histogram of the bytes just added. Only the bytes that were counted are
+   * looked at.
+   *
+   * @param scalarProducts the 256 scalar products to update, see
+   *                       {@link #scalarProducts()}
+   */
+  public void addScalarProductsTo(double[] scalarProducts) {
+    assert scalarProducts != null && scalarProducts.length == Decrypt.ALPHABETSIZE;
+
+    for (int letter = 0; letter < counts.length; ++letter) {
+      if (counts[letter] == 0 || letter == Decrypt.SPACE) {
+        continue;
+      }
+      for (int j = 0; j < Decrypt.ENGLISHFREQUENCIES.length; ++j) { // the positions of 'a' making it letter j
+        scalarProducts[(letter - j) & 0xFF] += Decrypt.ENGLISHFREQUENCIES[j] * counts[letter];
+      }
+    }
+  }
+
+  /**
+   * Task counting a slice of the text, splitting it in two halves while it is
+   * too large
+   */
+  private static class SliceCount extends RecursiveTask<FrequencyHistogram> {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] text;
+    private final int from;
+    private final int to;
+
+    SliceCount(byte[] text, int from, int to) {
+      this.text = text;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected FrequencyHistogram compute() {
+      if (to - from <= PARALLEL_THRESHOLD) {
+        return FrequencyHistogram.of(text, from, to - from);
+      }
+      int middle = (from + to) >>> 1;
+      SliceCount left = new SliceCount(text, from, middle);
+      left.fork();
+      FrequencyHistogram histogram = new SliceCount(text, middle, to).compute();
+      histogram.merge(left.join());
+      return histogram;
+    }
+  }
+}
@@ -8,27 +8,29 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.ArrayList;
 
 public class Helper {
   private static final String SEP = File.separator;
   private static final String RES_PATH_HEADER = "res" + SEP;
+  private static final long MAP_WINDOW = 1L << 28; // size of the parts of a file mapped at once (256 MiB)
 
   /**
    * Method to clean a string, only keeping lower case letters, and spaces.
    * 
    * @param s the string to clean
    * @return the string cleaned
+   * @see TextNormalizer to clean directly into bytes, or a whole stream
    */
   public static String cleanString(String s) {
-    String cleaned = s.toLowerCase();
-    cleaned = cleaned.replaceAll("[:,;.]", " ");
-    cleaned = cleaned.replaceAll("[^a-z ]", ""); // 97-122,32
-
-    assert (cleaned.matches("[a-z ]*"));
-    return cleaned;
+    return TextNormalizer.normalizeToString(s); // lower case, [:,;.] as spaces, then only 97-122,32
   }
 
   /**
@@ -69,6 +71,7 @@ public class Helper {
    * @param name the name of the file
    */
   public static void writeStringToFile(String text, String name, boolean append) {
+    long start = Metrics.start();
     try {
       File f = new File(RES_PATH_HEADER + name);
       if (!append) {
@@ -87,6 +90,7 @@ public class Helper {
     } catch (IOException e) {
       e.printStackTrace();
     }
+    Metrics.stop(Metrics.Operation.WRITE_FILE, Metrics.NO_CIPHER, text.length(), start);
   }
 
   /**
@@ -95,7 +99,8 @@ public class Helper {
    * @param fileName the name of the file
    */
   public static String readStringFromFile(String fileName) {
-    String string = "";
+    long start = Metrics.start();
+    StringBuilder string = new StringBuilder();
     File file = new File(RES_PATH_HEADER + fileName);
     try {
       BufferedReader br = new BufferedReader(new FileReader(file));
@@ -104,9 +109,9 @@ public class Helper {
       boolean checkFirst = false;
       while ((temp = br.readLine()) != null) {
         if (checkFirst) {
-          string += (" " + temp);
+          string.append(' ').append(temp);
         } else {
-          string += temp;
+          string.append(temp);
           checkFirst = true;
         }
       }
@@ -117,8 +122,159 @@ public class Helper {
       e.printStackTrace();
     }
 
-    return string;
+    Metrics.stop(Metrics.Operation.READ_FILE, Metrics.NO_CIPHER, string.length(), start);
+    return string.toString();
+
+  }
+
+  /**
+   * Method to read a file into a byte array, without any change (line breaks are
+   * kept)
+   * 
+   * @param fileName the name of the file
+   * @return the content of the file, or an empty array if it can't be read
+   */
+  public static byte[] readBytesFromFile(String fileName) {
+    long start = Metrics.start();
+    try {
+      byte[] bytes = Files.readAllBytes(new File(RES_PATH_HEADER + fileName).toPath());
+      Metrics.stop(Metrics.Operation.READ_FILE, Metrics.NO_CIPHER, bytes.length, start);
+      return bytes;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return new byte[0];
+    }
+  }
+
+  /**
+   * Method to write a byte array to a file exactly as it is, clears the file
+   * first
+   * 
+   * @param bytes the bytes to write
+   * @param name  the name of the file
+   */
+  public static void writeBytesToFile(byte[] bytes, String name) {
+    long start = Metrics.start();
+    try {
+      Files.write(new File(RES_PATH_HEADER + name).toPath(), bytes);
+      Metrics.stop(Metrics.Operation.WRITE_FILE, Metrics.NO_CIPHER, bytes.length, start);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  // -----------------------Memory mapped files-------------------------
+
+  /**
+   * Encodes a file into another one. Both files are memory mapped, the bytes are
+   * copied from one mapping to the other and encoded in place, so the content is
+   * never copied on the heap. Works with files of any size.
+   * 
+   * @param inputName  the name of the file to encode
+   * @param outputName the name of the file to write the result to, cleared first
+   *                   (when it is the input file, the file is encoded in place)
+   * @param key        the key used to encode
+   * @param type       the method used to encode : 0 = Caesar, 1 = Vigenere, 2 =
+   *                   XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @return the number of bytes encoded, -1 if the files could not be accessed
+   */
+  public static long encryptFile(String inputName, String outputName, byte[] key, int type) {
+    return mapFile(inputName, outputName, new StreamCipher(type, key));
+  }
+
+  /**
+   * Decodes a file encoded with {@link #encryptFile} into another one
+   * 
+   * @param inputName  the name of the encoded file
+   * @param outputName the name of the file to write the clear text to, cleared
+   *                   first (when it is the input file, the file is decoded in
+   *                   place)
+   * @param key        the key that was used to encode
+   * @param type       the method that was used to encode : 0 = Caesar, 1 =
+   *                   Vigenere, 2 = XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @return the number of bytes decoded, -1 if the files could not be accessed
+   */
+  public static long decryptFile(String inputName, String outputName, byte[] key, int type) {
+    return mapFile(inputName, outputName, new StreamCipher(type, key, true));
+  }
+
+  /**
+   * Encodes a file in place, overwriting its content
+   * 
+   * @param name the name of the file to encode
+   * @param key  the key used to encode
+   * @param type the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3
+   *             = One time pad, 4 = CBC, 5 = CTR
+   * @return the number of bytes encoded, -1 if the file could not be accessed
+   */
+  public static long encryptFileInPlace(String name, byte[] key, int type) {
+    return mapFileInPlace(name, new StreamCipher(type, key));
+  }
+
+  /**
+   * Decodes in place a file encoded with {@link #encryptFile} or
+   * {@link #encryptFileInPlace}
+   * 
+   * @param name the name of the file to decode
+   * @param key  the key that was used to encode
+   * @param type the method that was used to encode : 0 = Caesar, 1 = Vigenere, 2
+   *             = XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @return the number of bytes decoded, -1 if the file could not be accessed
+   */
+  public static long decryptFileInPlace(String name, byte[] key, int type) {
+    return mapFileInPlace(name, new StreamCipher(type, key, true));
+  }
+
+  private static long mapFile(String inputName, String outputName, StreamCipher cipher) {
+    Path input = new File(RES_PATH_HEADER + inputName).toPath();
+    Path output = new File(RES_PATH_HEADER + outputName).toPath();
+    try {
+      if (Files.exists(output) && Files.isSameFile(input, output)) { // truncating the output would empty the input
+        return mapFileInPlace(input, cipher);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      return -1;
+    }
+    long started = Metrics.start();
+    try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      long size = in.size();
+      for (long start = 0; start < size; start += MAP_WINDOW) { // one window after the other
+        long length = Math.min(MAP_WINDOW, size - start);
+        MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY, start, length);
+        MappedByteBuffer destination = out.map(FileChannel.MapMode.READ_WRITE, start, length);
+        destination.put(source); // copy between the two mappings, outside of the heap
+        destination.flip();
+        cipher.update(destination);
+      }
+      Metrics.stop(Metrics.Operation.MAP_FILE, cipher.getType(), size, started);
+      return size;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return -1;
+    }
+  }
+
+  private static long mapFileInPlace(String name, StreamCipher cipher) {
+    return mapFileInPlace(new File(RES_PATH_HEADER + name).toPath(), cipher);
+  }
 
+  private static long mapFileInPlace(Path file, StreamCipher cipher) {
+    long started = Metrics.start();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      for (long start = 0; start < size; start += MAP_WINDOW) {
+        long length = Math.min(MAP_WINDOW, size - start);
+        cipher.update(channel.map(FileChannel.MapMode.READ_WRITE, start, length));
+      }
+      Metrics.stop(Metrics.Operation.MAP_FILE, cipher.getType(), size, started);
+      return size;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return -1;
+    }
   }
 
   public static void printByteArray(byte[] array) {
@@ -0,0 +1,229 @@
+package crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Key length search for Vigenere cipher texts following the Kasiski
+ * examination : a trigram or tetragram of the clear text encoded twice with the
+ * same part of the key gives the same cipher bytes, so the distances between
+ * repeated n-grams of the cipher tend to be multiples of the key length.
+ *
+ * The cipher is read once with a window of its last four bytes. Every trigram
+ * and tetragram, packed exactly in a long (no collision is possible), is looked
+ * up in an open addressing table holding the position where it was last seen,
+ * and the distance to that position is counted. Every key length then gets one
+ * vote per distance it divides, by walking through its multiples in the
+ * distance counts, which costs about n * ln(maxKeyLength) operations : the
+ * whole search is linear in the length of the cipher.
+ *
+ * A wrong length k divides a random distance once out of k times, so it gets
+ * about n / k of the n distances. The score of a length is the number of
+ * standard deviations its votes are above this : about 0 for the wrong lengths,
+ * highest for the right length, lower for its divisors (which also get the
+ * random votes of their other multiples) and for its multiples (which only get
+ * part of the right votes).
+ */
+public class KasiskiEstimator {
+
+  public static final int DEFAULT_MAX_KEY_LENGTH = 128;
+
+  // relative difference of score under which the shorter key length is preferred
+  private static final double TOLERANCE = 0.3;
+  private static final int SHORTEST_NGRAM = 3;
+  private static final int INITIAL_CAPACITY = 1 << 10;
+
+  /**
+   * Finds the length of the key of a Vigenere cipher text, up to
+   * DEFAULT_MAX_KEY_LENGTH
+   *
+   * @param cipher the byte array representing the encoded text without space
+   * @return the length of the key, 0 if no n-gram is repeated
+   */
+  public static int findKeyLength(byte[] cipher) {
+    return findKeyLength(cipher, DEFAULT_MAX_KEY_LENGTH);
+  }
+
+  /**
+   * Finds the length of the key of a Vigenere cipher text
+   *
+   * @param cipher       the byte array representing the encoded text without
+   *                     space
+   * @param maxKeyLength the longest key length accepted
+   * @return the length of the key, 0 if no n-gram is repeated
+   */
+  public static int findKeyLength(byte[] cipher, int maxKeyLength) {
+    int[] keyLengths = keyLengths(cipher, maxKeyLength, 1);
+    return (keyLengths.length == 0) ? 0 : keyLengths[0];
+  }
+
+  /**
+   * Gives the most likely key lengths : the first one is the shortest length
+   * scoring within 30 % of the best score, then the others from the best to
+   * the worst score
+   *
+   * @param cipher       the byte array representing the encoded text without
+   *                     space
+   * @param maxKeyLength the longest key length accepted
+   * @param count        the maximum number of key lengths returned
+   * @return the key lengths, empty if no n-gram is repeated
+   */
+  public static int[] keyLengths(byte[] cipher, int maxKeyLength, int count) {
+    assert count > 0;
+
+    double[] scores = scores(votes(cipher, maxKeyLength));
+    List<Integer> ranked = new ArrayList<Integer>();
+    for (int k = 2; k < scores.length; ++k) {
+      if (scores[k] > 0) {
+        ranked.add(k);
+      }
+    }
+    if (ranked.isEmpty()) {
+      return new int[0];
+    }
+    // stable sort : equal scores stay from the shortest to the longest
+    ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+    double best = scores[ranked.get(0)];
+    for (int k = 2; k < scores.length; ++k) { // the shortest length close to the best goes first
+      if (scores[k] >= (1 - TOLERANCE) * best) {
+        ranked.remove(Integer.valueOf(k));
+        ranked.add(0, k);
+        break;
+      }
+    }
+
+    int[] keyLengths = new int[Math.min(count, ranked.size())];
+    for (int i = 0; i < keyLengths.length; ++i) {
+      keyLengths[i] = ranked.get(i);
+    }
+    return keyLengths;
+  }
+
+  /**
+   * Counts for every key length the distances between repeated n-grams that it
+   * divides
+   *
+   * @param cipher       the byte array representing the encoded text without
+   *                     space
+   * @param maxKeyLength the longest key length counted
+   * @return the votes, indexed by key length from 0 to maxKeyLength (1 gets
+   *         every distance, 0 none)
+   */
+  public static int[] votes(byte[] cipher, int maxKeyLength) {
+    assert cipher != null;
+    assert maxKeyLength > 0;
+
+    int[] distances = distances(cipher);
+    int[] votes = new int[maxKeyLength + 1];
+    for (int k = 1; k <= maxKeyLength; ++k) {
+      int sum = 0;
+      for (int d = k; d < distances.length; d += k) {
+        sum += distances[d];
+      }
+      votes[k] = sum;
+    }
+    return votes;
+  }
+
+  /**
+   * Indexes the trigrams and tetragrams of the cipher and counts the distances
+   * between two consecutive occurrences of the same n-gram
+   *
+   * @return the number of repeats at each distance, indexed by distance
+   */
+  private static int[] distances(byte[] cipher) {
+    int[] distances = new int[cipher.length];
+    Index index = new Index(INITIAL_CAPACITY);
+    long window = 0;
+    for (int i = 0; i < cipher.length; ++i) {
+      window = ((window << Byte.SIZE) | (cipher[i] & 0xFF)) & 0xFFFFFFFFL;
+      if (i >= SHORTEST_NGRAM - 1) {
+        countRepeat(distances, index, (window & 0xFFFFFFL) | (3L << Integer.SIZE), i);
+      }
+      if (i >= SHORTEST_NGRAM) {
+        countRepeat(distances, index, window | (4L << Integer.SIZE), i);
+      }
+    }
+    return distances;
+  }
+
+  private static void countRepeat(int[] distances, Index index, long ngram, int position) {
+    int previous = index.put(ngram, position);
+    if (previous >= 0) {
+      ++distances[position - previous];
+    }
+  }
+
+  /**
+   * Compares the votes of every key length to what random distances would give
+   */
+  private static double[] scores(int[] votes) {
+    double[] scores = new double[votes.length];
+    for (int k = 2; k < votes.length; ++k) {
+      double expected = (double) votes[1] / k;
+      scores[k] = (expected == 0) ? 0 : (votes[k] - expected) / Math.sqrt(expected);
+    }
+    return scores;
+  }
+
+  /**
+   * Open addressing table from packed n-grams (never 0, the size of the n-gram
+   * is packed above its bytes) to the position where they were last seen,
+   * doubling when it is half full
+   */
+  private static final class Index {
+    private long[] keys;
+    private int[] positions;
+    private int shift; // 64 - log2(capacity), for the Fibonacci hashing
+    private int size = 0;
+
+    Index(int capacity) {
+      keys = new long[capacity];
+      positions = new int[capacity];
+      shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Sets the position of an n-gram
+     *
+     * @return the previous position, -1 if the n-gram is new
+     */
+    int put(long key, int position) {
+      int mask = keys.length - 1;
+      int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+      while (keys[slot] != 0) {
+        if (keys[slot] == key) {
+          int previous = positions[slot];
+          positions[slot] = position;
+          return previous;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      positions[slot] = position;
+      if (++size > keys.length / 2) {
+        grow();
+      }
+      return -1;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      int[] oldPositions = positions;
+      keys = new long[oldKeys.length * 2];
+      positions = new int[oldKeys.length * 2];
+      shift -= 1;
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; ++i) {
+        if (oldKeys[i] != 0) {
+          int slot = (int) ((oldKeys[i] * 0x9E3779B97F4A7C15L) >>> shift);
+          while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          positions[slot] = oldPositions[i];
+        }
+      }
+    }
+  }
+}
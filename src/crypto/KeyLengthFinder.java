@@ -0,0 +1,247 @@
+package crypto;
+
+import java.util.Arrays;
+
+/**
+ * Key length search for Vigenere cipher texts that computes the coincidences
+ * for all the offsets at once with a fast Fourier transform, instead of
+ * comparing the cipher with itself once per offset.
+ *
+ * For every byte value s, the cipher gives a signal a_s (1 where the cipher is
+ * s, 0 elsewhere), and the number of coincidences at offset k is the sum over s
+ * of the autocorrelations of a_s at k. By linearity the power spectra of all
+ * the signals can be added and transformed back only once. Two signals are
+ * packed in the real and imaginary parts of each forward transform.
+ *
+ * The transform counts all the pairs (i, i + k) inside the cipher, whereas
+ * {@link Decrypt#vigenereFindKeyLengthByShifts(ByteSequence)} stops its pairs
+ * k bytes before the end. The pairs in excess are removed directly, which gives
+ * the same coincidences and so the same key lengths. This costs about k operations
+ * per offset k, so it is skipped when the offsets scanned are too many for it
+ * (long cipher texts without a limit on the key length), where the excess is
+ * negligible anyway.
+ *
+ * When only a few offsets are needed (key length limited), comparing the
+ * cipher with itself directly is cheaper than the transforms and gives the
+ * exact coincidences, so it is used instead.
+ */
+public class KeyLengthFinder {
+
+  public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+  // number of times the longest key fits in the scanned offsets when the key
+  // length is limited
+  private static final int SCANNED_PERIODS = 8;
+
+  // maximum number of operations per byte of cipher spent removing the pairs in
+  // excess
+  private static final int CORRECTION_BUDGET = 1 << 15;
+
+  /**
+   * Finds the length of the key of a Vigenere cipher text
+   *
+   * @param cipher the byte array representing the encoded text without space
+   * @return the length of the key
+   */
+  public static int findKeyLength(byte[] cipher) {
+    return findKeyLength(cipher, NO_LIMIT);
+  }
+
+  /**
+   * Finds the length of the key of a Vigenere cipher text, only looking for keys
+   * up to a given length. Limiting the length also limits the number of offsets
+   * scanned for local maximums.
+   *
+   * @param cipher       the byte array representing the encoded text without
+   *                     space
+   * @param maxKeyLength the longest key length accepted
+   * @return the length of the key, 0 if none was found
+   */
+  public static int findKeyLength(byte[] cipher, int maxKeyLength) {
+    assert cipher != null;
+    assert cipher.length != 0;
+    assert maxKeyLength > 0;
+
+    int offsets = (int) Math.min(cipher.length - 1, 2L * SCANNED_PERIODS * maxKeyLength);
+    if (offsets < 3) { // not enough offsets to find any local maximum
+      return 0;
+    }
+    long start = Metrics.start();
+    int[] coincidences = coincidences(cipher, offsets);
+    int keyLength = Decrypt.vigenereKeyLengthFromCoincidences(coincidences, coincidences.length / 2, maxKeyLength);
+    Metrics.stop(Metrics.Operation.KEY_LENGTH, Decrypt.VIGENERE, cipher.length, start);
+    return keyLength;
+  }
+
+  /**
+   * Computes the number of coincidences of the cipher with itself shifted by
+   * each offset
+   *
+   * @param cipher    the byte array representing the encoded text
+   * @param maxOffset the last offset computed
+   * @return the number of coincidences for each offset, starting with offset 1
+   */
+  public static int[] coincidences(byte[] cipher, int maxOffset) {
+    assert cipher != null;
+    assert maxOffset < cipher.length;
+
+    int n = cipher.length;
+    int size = Integer.highestOneBit(n + maxOffset) << 1; // big enough for the shifted signals not to wrap around
+    FrequencyHistogram histogram = FrequencyHistogram.of(cipher);
+
+    int transforms = 1; // the last transform back
+    for (int value = 0; value < Decrypt.ALPHABETSIZE; ++value) {
+      if (histogram.count((byte) value) >= 2) {
+        ++transforms;
+      }
+    }
+    transforms = (transforms + 1) / 2 + 1;
+    long transformCost = (long) transforms * size * Integer.numberOfTrailingZeros(size);
+    if ((long) n * maxOffset <= transformCost) { // few offsets, cheaper to count them one by one
+      return directCoincidences(cipher, maxOffset);
+    }
+
+    double[] cos = new double[size / 2];
+    double[] sin = new double[size / 2];
+    for (int i = 0; i < size / 2; ++i) {
+      cos[i] = Math.cos(2 * Math.PI * i / size);
+      sin[i] = -Math.sin(2 * Math.PI * i / size);
+    }
+
+    double[] power = new double[size]; // sum of the power spectra of all the signals
+    double[] real = new double[size];
+    double[] imaginary = new double[size];
+
+    int pending = -1; // byte value waiting for a second one to share a transform
+    for (int value = 0; value <= Decrypt.ALPHABETSIZE; ++value) {
+      if (value < Decrypt.ALPHABETSIZE && histogram.count((byte) value) < 2) { // can't coincide with itself
+        continue;
+      }
+      if (value < Decrypt.ALPHABETSIZE && pending == -1) {
+        pending = value;
+        continue;
+      }
+      if (pending == -1) { // end of the values, nothing left to transform
+        break;
+      }
+
+      // the first value goes in the real part, the second (if any) in the imaginary
+      // part
+      Arrays.fill(real, 0);
+      Arrays.fill(imaginary, 0);
+      for (int i = 0; i < n; ++i) {
+        int b = cipher[i] & 0xFF;
+        if (b == pending) {
+          real[i] = 1;
+        } else if (b == value) {
+          imaginary[i] = 1;
+        }
+      }
+      transform(real, imaginary, cos, sin);
+
+      // |A(f)|² + |B(f)|² = (|Z(f)|² + |Z(-f)|²) / 2 when z = a + ib with a and b
+      // real
+      for (int f = 0; f < size; ++f) {
+        int opposite = (size - f) & (size - 1);
+        power[f] += (real[f] * real[f] + imaginary[f] * imaginary[f]
+            + real[opposite] * real[opposite] + imaginary[opposite] * imaginary[opposite]) / 2;
+      }
+      pending = -1;
+    }
+
+    // the power spectrum is real and symmetric, so is its transform
+    Arrays.fill(imaginary, 0);
+    transform(power, imaginary, cos, sin);
+
+    int[] coincidences = new int[maxOffset];
+    for (int offset = 1; offset <= maxOffset; ++offset) {
+      coincidences[offset - 1] = (int) Math.round(power[offset] / size);
+    }
+
+    if ((long) maxOffset * maxOffset / 2 <= (long) CORRECTION_BUDGET * n) {
+      for (int offset = 1; offset <= maxOffset; ++offset) {
+        if (2 * offset >= n) { // no pair left, see Decrypt.vigenereFindKeyLength
+          coincidences[offset - 1] = 0;
+          continue;
+        }
+        for (int i = n - offset; i < n; ++i) { // pairs ending in the last offset bytes
+          if (cipher[i - offset] == cipher[i]) {
+            --coincidences[offset - 1];
+          }
+        }
+      }
+    }
+    return coincidences;
+  }
+
+  /**
+   * Counts the coincidences by comparing the cipher with itself, with the same
+   * pairs as {@link Decrypt#vigenereFindKeyLength(java.util.List)}
+   *
+   * @param cipher    the byte array representing the encoded text
+   * @param maxOffset the last offset computed
+   * @return the number of coincidences for each offset, starting with offset 1
+   */
+  private static int[] directCoincidences(byte[] cipher, int maxOffset) {
+    int[] coincidences = new int[maxOffset];
+    for (int offset = 1; offset <= maxOffset; ++offset) {
+      int frequenceCounter = 0;
+      for (int i = offset; i < cipher.length - offset; ++i) {
+        if (cipher[i - offset] == cipher[i]) {
+          ++frequenceCounter;
+        }
+      }
+      coincidences[offset - 1] = frequenceCounter;
+    }
+    return coincidences;
+  }
+
+  /**
+   * In place iterative radix-2 fast Fourier transform
+   *
+   * @param real      the real parts, length must be a power of 2
+   * @param imaginary the imaginary parts
+   * @param cos       the cosines of the twiddle factors
+   * @param sin       the sines of the twiddle factors
+   */
+  private static void transform(double[] real, double[] imaginary, double[] cos, double[] sin) {
+    int size = real.length;
+
+    // bit reversal permutation
+    for (int i = 1, j = 0; i < size; ++i) {
+      int bit = size >> 1;
+      for (; (j & bit) != 0; bit >>= 1) {
+        j ^= bit;
+      }
+      j ^= bit;
+      if (i < j) {
+        double temp = real[i];
+        real[i] = real[j];
+        real[j] = temp;
+        temp = imaginary[i];
+        imaginary[i] = imaginary[j];
+        imaginary[j] = temp;
+      }
+    }
+
+    // butterflies
+    for (int length = 2; length <= size; length <<= 1) {
+      int half = length >> 1;
+      int step = size / length;
+      for (int start = 0; start < size; start += length) {
+        for (int k = 0; k < half; ++k) {
+          int even = start + k;
+          int odd = even + half;
+          double twiddleReal = cos[k * step];
+          double twiddleImaginary = sin[k * step];
+          double oddReal = real[odd] * twiddleReal - imaginary[odd] * twiddleImaginary;
+          double oddImaginary = real[odd] * twiddleImaginary + imaginary[odd] * twiddleReal;
+          real[odd] = real[even] - oddReal;
+          imaginary[odd] = imaginary[even] - oddImaginary;
+          real[even] += oddReal;
+          imaginary[even] += oddImaginary;
+        }
+      }
+    }
+  }
+}
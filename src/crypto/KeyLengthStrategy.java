@@ -0,0 +1,38 @@
+package crypto;
+
+/**
+ * How {@link Decrypt#vigenereWithFrequencies(byte[], KeyLengthStrategy)} finds
+ * the length of the key
+ */
+public enum KeyLengthStrategy {
+
+  /**
+   * Coincidences of the cipher with itself shifted by every offset, one offset
+   * at a time, see {@link Decrypt#vigenereFindKeyLengthByShifts(ByteSequence)}.
+   * Quadratic in the length of the cipher, the reference for the other ones.
+   */
+  COINCIDENCE,
+
+  /**
+   * The same coincidences computed for all the offsets at once, see
+   * {@link KeyLengthFinder}. Used by
+   * {@link Decrypt#vigenereWithFrequencies(byte[])} and
+   * {@link Decrypt#breakCipher(String, int)}.
+   */
+  FFT,
+
+  /**
+   * Distances between repeated trigrams and tetragrams, see
+   * {@link KasiskiEstimator}. Linear, falls back to FFT when nothing is
+   * repeated.
+   */
+  KASISKI,
+
+  /**
+   * The best Kasiski candidates (up to Decrypt.KEY_LENGTH_CANDIDATES, see
+   * {@link KasiskiEstimator#keyLengths(byte[], int, int)}) and the FFT length
+   * are all tried, and the key giving the text closest to English is kept, see
+   * {@link Decrypt#vigenereFindKey(ByteSequence, int[])}
+   */
+  COMBINED
+}
@@ -1,8 +1,26 @@
 package crypto;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /*
  * Part 1: Encode (with note that one can reuse the functions to decode)
@@ -159,6 +177,100 @@ public class Main {
     System.out.println(Decrypt.vigenereFindKeyLength(encoded));
   }
 
+  public static void testKeyLengthFinder() {
+    byte[] text = Helper.stringToBytes(Helper.readStringFromFile("long_text.txt"));
+    for (int size = 1; size <= 12; ++size) {
+      List<Byte> encoded = Decrypt.removeSpaces(Encrypt.vigenere(text, Encrypt.generatePad(size)));
+      byte[] primitive = ByteSequence.of(encoded).toArray();
+      int reference = Decrypt.vigenereFindKeyLengthByShifts(ByteSequence.of(encoded));
+      if (KeyLengthFinder.findKeyLength(primitive) != reference || Decrypt.vigenereFindKeyLength(encoded) != reference)
+        System.out.println("TEST FAILED for key size " + size);
+    }
+  }
+
+  public static void testKasiskiEstimator() {
+    byte[] text = Helper.stringToBytes(Helper.cleanString(Helper.readStringFromFile("long_text.txt")));
+    byte[] large = new byte[text.length * 8];
+    for (int i = 0; i < 8; ++i) {
+      System.arraycopy(text, 0, large, i * text.length, text.length);
+    }
+    Random random = new Random(21);
+    for (int size = 2; size <= 16; ++size) {
+      byte[] key = new byte[size];
+      for (int i = 0; i < size; ++i) {
+        key[i] = (byte) (1 + random.nextInt(60)); // no letter is encoded as a space
+      }
+      byte[] encoded = Encrypt.vigenere(large, key);
+      byte[] withoutSpaces = ByteSequence.withoutSpaces(encoded).toArray();
+      if (KasiskiEstimator.findKeyLength(withoutSpaces) != size)
+        System.out.println("TEST FAILED for key size " + size);
+      if (!Arrays.equals(Encrypt.vigenere(encoded, Decrypt.vigenereWithFrequencies(encoded, KeyLengthStrategy.KASISKI)),
+          large))
+        System.out.println("TEST FAILED for KASISKI and key size " + size);
+      byte[] shorter = Encrypt.vigenere(text, key); // the FFT of COMBINED is slower on long texts
+      if (!Arrays.equals(Encrypt.vigenere(shorter, Decrypt.vigenereWithFrequencies(shorter, KeyLengthStrategy.COMBINED)),
+          text))
+        System.out.println("TEST FAILED for COMBINED and key size " + size);
+    }
+  }
+
+  public static void testByteSequence() {
+    byte[] text = Helper.stringToBytes(Helper.readStringFromFile("text_one.txt"));
+    for (int size = 1; size <= 8; ++size) {
+      byte[] cipher = Encrypt.vigenere(text, Encrypt.generatePad(size));
+      List<Byte> boxed = Decrypt.removeSpaces(cipher);
+      ByteSequence primitive = ByteSequence.withoutSpaces(cipher);
+      if (!boxed.equals(primitive.asList()))
+        System.out.println("TEST FAILED removing spaces for key size " + size);
+      int keyLength = Decrypt.vigenereFindKeyLength(primitive);
+      if (keyLength != Decrypt.vigenereFindKeyLength(boxed))
+        System.out.println("TEST FAILED key length for key size " + size);
+      if (!Arrays.equals(Decrypt.vigenereFindKey(primitive, keyLength), Decrypt.vigenereFindKey(boxed, keyLength)))
+        System.out.println("TEST FAILED key for key size " + size);
+
+      // every column of a view is the same as the column of the copied bytes
+      byte[] middle = Arrays.copyOfRange(primitive.toArray(), 10, primitive.size() - 10);
+      ByteSequence view = primitive.view(10, primitive.size() - 10);
+      for (int column = 0; column < size; ++column) {
+        ByteSequence strided = view.strided(column, size);
+        FrequencyHistogram counted = new FrequencyHistogram();
+        strided.countInto(counted);
+        FrequencyHistogram expected = new FrequencyHistogram();
+        for (int i = column; i < middle.length; i += size) {
+          expected.add(middle[i]);
+        }
+        if (strided.size() != (middle.length - column + size - 1) / size || counted.total() != expected.total()
+            || !Arrays.equals(counted.frequencies(), expected.frequencies())
+            || strided.get(strided.size() - 1) != middle[column + (strided.size() - 1) * size])
+          System.out.println("TEST FAILED strided view " + column + " for key size " + size);
+      }
+      if (!Arrays.equals(view.toArray(), middle))
+        System.out.println("TEST FAILED view for key size " + size);
+    }
+  }
+
+  public static void testVigenereCandidates() {
+    byte[] text = Helper.stringToBytes(Helper.readStringFromFile("long_text.txt"));
+    Random random = new Random(12);
+    for (int size = 1; size <= 8; ++size) {
+      byte[] key = new byte[size];
+      for (int i = 0; i < size; ++i) {
+        key[i] = (byte) (1 + random.nextInt(60)); // no letter is encoded as a space
+      }
+      byte[] cipher = Encrypt.vigenere(text, key);
+      ByteSequence withoutSpaces = ByteSequence.withoutSpaces(cipher);
+      int[] keyLengths = Decrypt.vigenereFindKeyLengths(withoutSpaces, Decrypt.KEY_LENGTH_CANDIDATES);
+      if (keyLengths.length == 0 || keyLengths[0] != Decrypt.vigenereFindKeyLength(withoutSpaces))
+        System.out.println("TEST FAILED ranking key lengths for key size " + size);
+      if (!Arrays.equals(Decrypt.vigenereFindKey(withoutSpaces, new int[] { size }),
+          Decrypt.vigenereFindKey(withoutSpaces, size)))
+        System.out.println("TEST FAILED single pass columns for key size " + size);
+      byte[] inverseKey = Decrypt.vigenereWithCandidates(cipher, Decrypt.KEY_LENGTH_CANDIDATES);
+      if (inverseKey.length != size || !Arrays.equals(Encrypt.vigenere(cipher, inverseKey), text))
+        System.out.println("TEST FAILED best of the candidates for key size " + size + " : " + inverseKey.length);
+    }
+  }
+
   public static void testVigenereKeyFinder() {
     byte[] cipher = Encrypt.vigenere(Helper.stringToBytes(Helper.readStringFromFile("text_one.txt")),
         new byte[] { 12, -34, 125, 89, -45 });
@@ -175,6 +287,25 @@ public class Main {
     }
   }
 
+  public static void testCaesarSampled() {
+    byte[] text = Helper.stringToBytes(Helper.readStringFromFile("long_text.txt"));
+    byte[] large = new byte[text.length * 64]; // the sample stops long before the end
+    for (int i = 0; i < 64; ++i) {
+      System.arraycopy(text, 0, large, i * text.length, text.length);
+    }
+    for (Integer key = -128; key < 128; ++key) {
+      byte[] encoded = Encrypt.caesar(large, key.byteValue());
+      if (Decrypt.caesarWithFrequencies(encoded, Decrypt.CAESAR_CONFIDENCE) != Decrypt.caesarWithFrequencies(encoded))
+        System.out.println("TEST FAILED at key " + key);
+      byte[] shortText = Arrays.copyOf(encoded, 40); // shorter than a round, always analyzed entirely
+      if (Decrypt.caesarWithFrequencies(shortText, 0) != Decrypt.caesarWithFrequencies(shortText))
+        System.out.println("TEST FAILED for a short text at key " + key);
+      if (key % 16 == 0 && !Arrays.equals(Decrypt.breakCipher(encoded, Decrypt.CAESAR, Decrypt.CAESAR_CONFIDENCE),
+          Decrypt.breakCipher(encoded, Decrypt.CAESAR)))
+        System.out.println("TEST FAILED for the adaptive mode at key " + key);
+    }
+  }
+
   public static void testVigenereWithFrequencies() {
     byte[] text = Helper.stringToBytes(Helper.readStringFromFile("text_one.txt"));
     int i = 0;
@@ -273,6 +404,9 @@ public class Main {
       byte[] key = Encrypt.generatePad(size);
       byte[] encoded = Encrypt.cbc(text, key);
       byte[] decoded = Decrypt.decryptCBC(encoded, key);
+      if (!Arrays.equals(decoded, Decrypt.decryptCBCParallel(encoded, key))) {
+        System.out.println("TEST FAILED for parallel decoding");
+      }
       for (int c = 0; c < text.length; ++c) {
         byte a = text[c];
         byte b = decoded[c];
@@ -308,6 +442,334 @@ public class Main {
     }
   }
 
+  public static void testStreamCipher() throws IOException {
+    byte[] text = Helper.stringToBytes(Helper.readStringFromFile("long_text.txt"));
+    byte[][] keys = { { 50 }, { 12, 34, 63 }, { -120 }, Encrypt.generatePad(text.length), { 5, -17, 42 },
+        { 7, -3, 99, 14 } };
+    for (int type = Encrypt.CAESAR; type <= Encrypt.CTR; ++type) {
+      byte[] expected = Helper
+          .stringToBytes(Encrypt.encrypt(Helper.bytesToString(text), Helper.bytesToString(keys[type]), type));
+      ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+      StreamCipher.encrypt(new ByteArrayInputStream(text), encoded, keys[type], type);
+      ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+      StreamCipher.decrypt(new ByteArrayInputStream(encoded.toByteArray()), decoded, keys[type], type);
+      if (!Arrays.equals(encoded.toByteArray(), expected) || !Arrays.equals(decoded.toByteArray(), text))
+        System.out.println("TEST FAILED for type " + type);
+    }
+  }
+
+  public static void testCTR() {
+    byte[] text = Helper.stringToBytes(Helper.readStringFromFile("long_text.txt"));
+    Random random = new Random(24);
+    for (int size = 1; size <= 20; ++size) {
+      byte[] iv = Encrypt.generatePad(size);
+      byte[] encoded = Encrypt.ctr(text, iv);
+      if (!Arrays.equals(Decrypt.decryptCTR(encoded, iv), text)
+          || !Arrays.equals(Decrypt.decryptCTRParallel(encoded, iv), text))
+        System.out.println("TEST FAILED for IV size " + size);
+      for (int i = 0; i < 20; ++i) { // any part is decoded without the bytes before it
+        int from = random.nextInt(text.length);
+        int length = random.nextInt(text.length - from);
+        byte[] part = new byte[length];
+        Decrypt.decryptCTR(encoded, from, part, 0, length, iv, from);
+        if (!Arrays.equals(part, Arrays.copyOfRange(text, from, from + length)))
+          System.out.println("TEST FAILED for IV size " + size + " from " + from);
+      }
+      ByteBuffer direct = ByteBuffer.allocateDirect(text.length - 100);
+      direct.put(encoded, 100, text.length - 100).flip();
+      Decrypt.decryptCTR(direct, direct, iv, 100);
+      byte[] decoded = new byte[text.length - 100];
+      direct.flip();
+      direct.get(decoded);
+      if (!Arrays.equals(decoded, Arrays.copyOfRange(text, 100, text.length)))
+        System.out.println("TEST FAILED for a direct buffer with IV size " + size);
+    }
+  }
+
+  public static void testParallelEncrypt() {
+    byte[] text = Helper.stringToBytes(Helper.readStringFromFile("long_text.txt"));
+    byte[][] keys = { { 50 }, { 12, 34, 63 }, { -120 }, Encrypt.generatePad(text.length), { 5, -17, 42 },
+        { 7, -3, 99, 14 } };
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int type = Encrypt.CAESAR; type <= Encrypt.CTR; ++type) {
+      byte[] expected = Helper
+          .stringToBytes(Encrypt.encrypt(Helper.bytesToString(text), Helper.bytesToString(keys[type]), type));
+      if (!Arrays.equals(ParallelEncrypt.encrypt(text, keys[type], type, executor, 1000), expected))
+        System.out.println("TEST FAILED for type " + type);
+    }
+    executor.shutdown();
+  }
+
+  public static void testCipherSession() throws InterruptedException {
+    String[] messages = Helper.readStringFromFile("long_text.txt").split("\\.");
+    String[] keys = { "2", "key", "\u00c8", Helper.bytesToString(Encrypt.generatePad(4096)), "ivs", "ctr" };
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int type = Encrypt.CAESAR; type <= Encrypt.CTR; ++type) {
+      final int currentType = type;
+      final CipherSession session = new CipherSession(type, keys[type]);
+      final CipherSession inverse = new CipherSession(type, Helper.stringToBytes(keys[type]), true);
+      for (int thread = 0; thread < 4; ++thread) { // the same sessions used by several threads
+        executor.execute(() -> {
+          for (String message : messages) {
+            if (message.isEmpty())
+              continue;
+            String encoded = session.encrypt(message);
+            String key = (currentType == Encrypt.ONETIME) ? keys[currentType].substring(0, message.length())
+                : keys[currentType]; // the pad is as long as the message
+            if (!encoded.equals(Encrypt.encrypt(message, key, currentType))
+                || !inverse.encrypt(encoded).equals(message))
+              System.out.println("TEST FAILED for type " + currentType);
+          }
+        });
+      }
+    }
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  public static void testBatch() {
+    List<String> messages = new ArrayList<String>();
+    for (String sentence : Helper.readStringFromFile("long_text.txt").split("\\.")) {
+      if (sentence.length() > 40)
+        messages.add(Helper.cleanString(sentence));
+    }
+    MessageBatch batch = MessageBatch.of(messages);
+    String[] keys = { "2", "key", "\u00c8", "", "ivs", "ctr" };
+    for (int type = Encrypt.CAESAR; type <= Encrypt.CTR; ++type) {
+      if (type == Encrypt.ONETIME)
+        continue;
+      MessageBatch encoded = Encrypt.encryptBatch(batch, Helper.stringToBytes(keys[type]), type);
+      MessageBatch broken = (type <= Encrypt.XOR) ? Decrypt.breakCipherBatch(encoded, type) : null;
+      for (int i = 0; i < batch.size(); ++i) {
+        String expected = Encrypt.encrypt(messages.get(i), keys[type], type);
+        if (!encoded.getString(i).equals(expected))
+          System.out.println("TEST FAILED encoding message " + i + " for type " + type);
+        if (broken != null && !broken.getString(i).equals(Decrypt.breakCipher(expected, type)))
+          System.out.println("TEST FAILED breaking message " + i + " for type " + type);
+      }
+    }
+  }
+
+  public static void testShellBatch() throws IOException {
+    byte[] text = Helper.readBytesFromFile("text_one.txt");
+    Path root = Files.createTempDirectory("batch");
+    PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+    try {
+      Path a = Files.createDirectories(root.resolve("a"));
+      Path b = Files.createDirectories(root.resolve("b"));
+      Files.write(a.resolve("x.txt"), text);
+      Files.write(b.resolve("x.txt"), text);
+      String out = root.resolve("out").toString();
+
+      String[] same = { "encrypt", "-c", "xor", "-k", "7", "-o", a.resolve("x.txt").toString(),
+          a.resolve("x.txt").toString() };
+      if (ShellBatch.run(same, quiet, quiet) != 2 || !Arrays.equals(Files.readAllBytes(a.resolve("x.txt")), text))
+        System.out.println("TEST FAILED for an output that is its input");
+      String[] duplicate = { "encrypt", "-c", "xor", "-k", "7", "-o", out, a.resolve("x.txt").toString(),
+          b.resolve("x.txt").toString() };
+      if (ShellBatch.run(duplicate, quiet, quiet) != 2 || Files.exists(root.resolve("out")))
+        System.out.println("TEST FAILED for two inputs with the same output");
+
+      // a directory holding a single file still gives a directory
+      String[] directory = { "encrypt", "-c", "ctr", "-k", "5,-17,42", "-o", out, a.toString() };
+      String[] back = { "decrypt", "-c", "ctr", "-k", "5,-17,42", "-o", root.resolve("back").toString(),
+          root.resolve("out").resolve("x.txt").toString() };
+      Files.createDirectories(root.resolve("back")); // an existing directory receives a single file
+      if (ShellBatch.run(directory, quiet, quiet) != 0 || ShellBatch.run(back, quiet, quiet) != 0
+          || !Arrays.equals(Files.readAllBytes(root.resolve("back").resolve("x.txt")), text))
+        System.out.println("TEST FAILED for a directory input");
+    } finally {
+      try (Stream<Path> files = Files.walk(root)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  public static void testTextNormalizer() throws IOException {
+    String text = Helper.readStringFromFile("long_text.txt") + " \u00c9T\u00c9, Kelvin : \u212A; \u00ff.";
+    String expected = text.toLowerCase().replaceAll("[:,;.]", " ").replaceAll("[^a-z ]", "");
+    if (!Helper.cleanString(text).equals(expected))
+      System.out.println("TEST FAILED for cleanString");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextNormalizer.normalize(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+        out);
+    if (!Arrays.equals(out.toByteArray(), Helper.stringToBytes(expected)))
+      System.out.println("TEST FAILED for the streaming normalizer");
+  }
+
+  public static void testBreakCache() {
+    String text = Helper.cleanString(Helper.readStringFromFile("long_text.txt"));
+    BreakCache cache = new BreakCache(4);
+    for (int round = 0; round < 2; ++round) {
+      for (int type = Decrypt.CAESAR; type <= Decrypt.XOR; ++type) {
+        String cipher = Encrypt.encrypt(text, (type == Decrypt.VIGENERE) ? "key" : "2", type);
+        if (!Decrypt.breakCipher(cipher, type, cache).equals(Decrypt.breakCipher(cipher, type)))
+          System.out.println("TEST FAILED for type " + type);
+      }
+    }
+    if (cache.hits() != 2 || cache.misses() != 2 || cache.size() != 2) // XOR is not cached
+      System.out.println("TEST FAILED for the statistics : " + cache);
+
+    byte[][] ciphers = { { 1 }, { 2 }, { 3 } };
+    BreakCache small = new BreakCache(2);
+    small.put(ciphers[0], Decrypt.CAESAR, new byte[] { 10 });
+    small.put(ciphers[1], Decrypt.CAESAR, new byte[] { 20 });
+    small.get(ciphers[0], Decrypt.CAESAR); // the second one is now the least recently used
+    small.put(ciphers[2], Decrypt.CAESAR, new byte[] { 30 });
+    if (small.size() != 2 || small.evictions() != 1 || small.get(ciphers[1], Decrypt.CAESAR) != null
+        || small.get(ciphers[0], Decrypt.CAESAR)[0] != 10 || small.get(ciphers[2], Decrypt.CAESAR)[0] != 30)
+      System.out.println("TEST FAILED for the eviction by number : " + small);
+
+    BreakCache light = new BreakCache(10, 1000);
+    light.put(ciphers[0], Decrypt.VIGENERE, new byte[] { 1, 2, 3 });
+    light.put(ciphers[1], Decrypt.VIGENERE, new byte[] { 4, 5, 6 });
+    light.put(ciphers[2], Decrypt.VIGENERE, new byte[2000]); // heavier than the limit on its own
+    if (light.size() != 1 || light.evictions() != 2 || light.get(ciphers[2], Decrypt.VIGENERE) == null)
+      System.out.println("TEST FAILED for the eviction by weight : " + light);
+  }
+
+  public static void testNGramScorer() throws IOException {
+    String text = Helper.cleanString(Helper.readStringFromFile("text_two.txt"));
+    byte[] message = Helper.stringToBytes(text.substring(0, 12)); // too short for the letter frequencies
+    for (Integer key = -128; key < 128; ++key) {
+      byte[] encoded = Encrypt.xor(message, key.byteValue(), false);
+      if (Decrypt.removeSpaces(encoded).size() != Decrypt.removeSpaces(message).size())
+        continue; // a letter was encoded as a space, no key gives the message back
+      if (!Arrays.equals(BruteForce.xor(encoded, 1)[0].getPlainText(), message))
+        System.out.println("TEST FAILED at key " + key);
+    }
+    NGramScorer trained = NGramScorer.train(Helper.stringToBytes(text));
+    ByteArrayOutputStream saved = new ByteArrayOutputStream();
+    trained.save(saved);
+    NGramScorer loaded = NGramScorer.load(new ByteArrayInputStream(saved.toByteArray()));
+    byte[] other = Helper.stringToBytes(Helper.cleanString(Helper.readStringFromFile("text_one.txt")));
+    if (loaded.score(other, 0, other.length) != trained.score(other, 0, other.length))
+      System.out.println("TEST FAILED for the saved tables");
+  }
+
+  public static void testPrunedCandidates() {
+    byte[] text = Helper.stringToBytes(Helper.cleanString(Helper.readStringFromFile("text_one.txt")));
+    for (int type : new int[] { Encrypt.CAESAR, Encrypt.XOR }) {
+      byte key = (byte) 100; // no letter is encoded as a space
+      byte[] cipher = (type == Encrypt.CAESAR) ? Encrypt.caesar(text, key) : Encrypt.xor(text, key);
+      byte[][] all = (type == Encrypt.CAESAR) ? Decrypt.caesarBruteForce(cipher) : Decrypt.xorBruteForce(cipher);
+      int survivors = 0;
+      boolean found = false;
+      for (Iterator<BruteForce.Candidate> it = BruteForce.candidates(cipher, type); it.hasNext();) {
+        BruteForce.Candidate candidate = it.next();
+        byte decodingKey = (type == Encrypt.CAESAR) ? (byte) -candidate.getKey() : candidate.getKey();
+        if (!Arrays.equals(candidate.getPlainText(), all[decodingKey + 128]))
+          System.out.println("TEST FAILED for type " + type + " at key " + candidate.getKey());
+        found |= candidate.getKey() == key;
+        ++survivors;
+      }
+      if (!found || survivors > 4)
+        System.out.println("TEST FAILED for type " + type + " : " + survivors + " survivors");
+    }
+  }
+
+  public static void testXorCracker() {
+    byte[] text = Helper.stringToBytes(Helper.readStringFromFile("long_text.txt"));
+    Random random = new Random(23);
+    for (int size = 1; size <= 30; ++size) {
+      byte[] key = new byte[size];
+      random.nextBytes(key);
+      byte[] cipher = Encrypt.xor(text, key);
+      if (!Arrays.equals(Encrypt.xor(cipher, key), text))
+        System.out.println("TEST FAILED for the encoding with key size " + size);
+      if (!Arrays.equals(XorCracker.crack(cipher), key))
+        System.out.println("TEST FAILED for key size " + size);
+    }
+    byte[] cipher = new byte[text.length];
+    int position = Encrypt.xor(text, 0, cipher, 0, 100, new byte[] { 1, 2, 3 }, 0);
+    Encrypt.xor(text, 100, cipher, 100, text.length - 100, new byte[] { 1, 2, 3 }, position);
+    if (!Arrays.equals(cipher, Encrypt.xor(text, new byte[] { 1, 2, 3 })))
+      System.out.println("TEST FAILED for the encoding in two parts");
+  }
+
+  public static void testMetrics() {
+    Metrics.reset();
+    String text = Helper.cleanString(Helper.readStringFromFile("long_text.txt"));
+    String cipher = Encrypt.encrypt(text, "2", Encrypt.CAESAR);
+    Decrypt.breakCipher(cipher, Decrypt.CAESAR);
+    long encryptions = 0;
+    for (Metrics.Snapshot snapshot : Metrics.snapshot()) {
+      if (snapshot.operation() == Metrics.Operation.ENCRYPT && snapshot.cipher() == Encrypt.CAESAR) {
+        encryptions = snapshot.count();
+        if (snapshot.bytes() != text.length() || snapshot.percentile(1) > snapshot.maxNanos())
+          System.out.println("TEST FAILED for the counters");
+      }
+    }
+    if (encryptions != (Metrics.ENABLED ? 1 : 0))
+      System.out.println("TEST FAILED for the number of encryptions : " + encryptions);
+    System.out.print(Metrics.report()); // run with -Dcrypto.metrics=true to see the table
+  }
+
+  public static void testMappedFiles() {
+    byte[] text = Helper.readBytesFromFile("long_text.txt");
+    byte[] key = { 5, -17, 42 };
+    for (int type = Encrypt.CAESAR; type <= Encrypt.CTR; ++type) {
+      if (type == Encrypt.ONETIME) {
+        continue;
+      }
+      Helper.encryptFile("long_text.txt", "output.txt", key, type);
+      Helper.decryptFileInPlace("output.txt", key, type);
+      if (!Arrays.equals(Helper.readBytesFromFile("output.txt"), text))
+        System.out.println("TEST FAILED for type " + type);
+      // an output that is the input is encoded in place instead of being emptied
+      if (Helper.encryptFile("output.txt", "output.txt", key, type) != text.length
+          || Helper.decryptFile("output.txt", "output.txt", key, type) != text.length
+          || !Arrays.equals(Helper.readBytesFromFile("output.txt"), text))
+        System.out.println("TEST FAILED for the same input and output with type " + type);
+    }
+  }
+
+  public static void testCipherContainer() throws IOException {
+    byte[] text = Helper.readBytesFromFile("long_text.txt");
+    byte[][] keys = { { 50 }, { 12, 34, 63 }, { -120 }, Encrypt.generatePad(text.length), { 5, -17, 42 },
+        { 7, -3, 99, 14 } };
+    Path file = Files.createTempFile("container", ".bin");
+    try {
+      for (int type = Encrypt.CAESAR; type <= Encrypt.CTR; ++type) {
+        CipherContainer.write(file, text, keys[type], type, 1000, ForkJoinPool.commonPool());
+        try (CipherContainer container = CipherContainer.open(file)) {
+          BitSet corrupted = new BitSet();
+          if (container.getType() != type || !container.verify().isEmpty()
+              || !Arrays.equals(container.decrypt(keys[type], corrupted), text) || !corrupted.isEmpty())
+            System.out.println("TEST FAILED for type " + type);
+          for (int chunk = container.getChunkCount() - 1; chunk >= 0; chunk -= 3) { // in any order
+            int from = chunk * container.getChunkSize();
+            if (!Arrays.equals(container.decryptChunk(chunk, keys[type]),
+                Arrays.copyOfRange(text, from, Math.min(from + container.getChunkSize(), text.length))))
+              System.out.println("TEST FAILED for type " + type + " chunk " + chunk);
+          }
+        }
+      }
+
+      byte[] bytes = Files.readAllBytes(file); // the byte in the middle of the data is damaged
+      int end = bytes.length - 20 - 16 * ((text.length + 999) / 1000); // before the index and the footer
+      bytes[end - text.length + text.length / 2] ^= 1;
+      Files.write(file, bytes);
+      try (CipherContainer container = CipherContainer.open(file)) {
+        BitSet corrupted = new BitSet();
+        byte[] decoded = container.decrypt(keys[Encrypt.CTR], corrupted);
+        int chunk = text.length / 2 / container.getChunkSize();
+        if (corrupted.cardinality() != 1 || !corrupted.get(chunk) || !container.verify().equals(corrupted))
+          System.out.println("TEST FAILED for the corrupted chunks : " + corrupted);
+        for (int i = 0; i < text.length; ++i) {
+          if (i / container.getChunkSize() != chunk && decoded[i] != text[i]) {
+            System.out.println("TEST FAILED for the intact chunks");
+            break;
+          }
+        }
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
   public static void testAssertions() {
     Encrypt.caesar(null, (byte) 50);
   }
@@ -0,0 +1,176 @@
+package crypto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Many messages packed one after the other in a single byte array. Message i
+ * is made of the bytes from offsets[i] (included) to offsets[i + 1] (excluded),
+ * so a batch of n messages has n + 1 offsets, the first one being 0.
+ *
+ * The batch methods of {@link Encrypt} and {@link Decrypt} go through the whole
+ * array at once and return their results in a new batch with the same layout.
+ * Batches never change after their creation.
+ */
+public final class MessageBatch {
+
+  private final byte[] data;
+  private final int[] offsets;
+
+  /**
+   * Wraps a packed array of messages, nothing is copied
+   *
+   * @param data    the messages, one after the other
+   * @param offsets the index of the first byte of every message, followed by
+   *                the length of the packed messages
+   */
+  public MessageBatch(byte[] data, int[] offsets) {
+    assert data != null;
+    assert offsets != null && offsets.length != 0;
+    assert offsets[0] == 0 && offsets[offsets.length - 1] <= data.length;
+
+    this.data = data;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Packs Strings in a batch, converted with {@link Helper#stringToBytes(String)}
+   *
+   * @param messages the messages
+   * @return the batch
+   */
+  public static MessageBatch of(Collection<String> messages) {
+    assert messages != null;
+
+    Builder builder = new Builder(messages.size());
+    for (String message : messages) {
+      builder.add(Helper.stringToBytes(message));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Packs Strings in a batch, converted with {@link Helper#stringToBytes(String)}
+   *
+   * @param messages the messages
+   * @return the batch
+   */
+  public static MessageBatch of(String... messages) {
+    return of(Arrays.asList(messages));
+  }
+
+  /**
+   * @return the number of messages
+   */
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * @param index the index of a message
+   * @return the index in {@link #data()} of its first byte
+   */
+  public int offset(int index) {
+    return offsets[index];
+  }
+
+  /**
+   * @param index the index of a message
+   * @return its number of bytes
+   */
+  public int length(int index) {
+    return offsets[index + 1] - offsets[index];
+  }
+
+  /**
+   * @return the packed messages, shared with the batch
+   */
+  public byte[] data() {
+    return data;
+  }
+
+  /**
+   * @return the offsets of the messages, shared with the batch
+   */
+  public int[] offsets() {
+    return offsets;
+  }
+
+  /**
+   * @param index the index of a message
+   * @return a copy of its bytes
+   */
+  public byte[] get(int index) {
+    return Arrays.copyOfRange(data, offsets[index], offsets[index + 1]);
+  }
+
+  /**
+   * @param index the index of a message
+   * @return the message, converted with {@link Helper#bytesToString(byte[])}
+   */
+  public String getString(int index) {
+    return Helper.bytesToString(get(index));
+  }
+
+  /**
+   * @return all the messages, converted with
+   *         {@link Helper#bytesToString(byte[])}
+   */
+  public List<String> toStrings() {
+    List<String> messages = new ArrayList<String>(size());
+    for (int i = 0; i < size(); ++i) {
+      messages.add(getString(i));
+    }
+    return messages;
+  }
+
+  /**
+   * Packs messages of unknown lengths, for the results that are not as long as
+   * the messages they come from
+   */
+  public static final class Builder {
+    private final ByteSequence data = new ByteSequence();
+    private int[] offsets;
+    private int size = 0;
+
+    /**
+     * @param expectedSize the number of messages expected
+     */
+    public Builder(int expectedSize) {
+      offsets = new int[Math.max(expectedSize, 1) + 1];
+    }
+
+    /**
+     * Adds a message at the end of the batch
+     *
+     * @param message the bytes of the message
+     */
+    public void add(byte[] message) {
+      add(message, 0, message.length);
+    }
+
+    /**
+     * Adds a part of an array as a message at the end of the batch
+     *
+     * @param bytes  the array containing the message
+     * @param offset the index of the first byte of the message
+     * @param length the length of the message
+     */
+    public void add(byte[] bytes, int offset, int length) {
+      data.addAll(bytes, offset, length);
+      if (size + 2 > offsets.length) {
+        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      offsets[++size] = data.size();
+    }
+
+    /**
+     * @return the batch of the messages added so far
+     */
+    public MessageBatch build() {
+      return new MessageBatch(data.toArray(), Arrays.copyOf(offsets, size + 1));
+    }
+  }
+}
@@ -0,0 +1,350 @@
+package crypto;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Counters and latency histograms of the operations of {@link Encrypt},
+ * {@link Decrypt}, {@link StreamCipher} and the files of {@link Helper}, for
+ * every operation and cipher : number of calls, bytes processed, total and
+ * maximum time, and a histogram of the times with one bucket per power of two
+ * nanoseconds.
+ *
+ * The registry is off unless the JVM is started with -Dcrypto.metrics=true. It
+ * can then be read with {@link #snapshot()}, printed with {@link #report()} (the
+ * batch mode of the {@link Shell} prints it on the standard error), or over JMX
+ * as the MXBean crypto:type=Metrics. Independently, every operation is also a
+ * {@link OperationEvent} when a flight recording asks for it.
+ *
+ * When neither is enabled, an operation only costs a test on a constant and the
+ * check that its event is disabled, no clock is read.
+ */
+public final class Metrics {
+
+  public static final boolean ENABLED = Boolean.getBoolean("crypto.metrics");
+
+  public static final String OBJECT_NAME = "crypto:type=Metrics";
+  public static final int NO_CIPHER = -1; // for the operations that don't depend on a cipher
+
+  private static final String[] CIPHERS = { "caesar", "vigenere", "xor", "onetime", "cbc", "ctr" };
+  private static final int BUCKETS = Long.SIZE; // bucket i counts the times from 2^i to 2^(i+1) - 1 ns
+  private static final long NOT_STARTED = 0;
+
+  /**
+   * The operations timed
+   */
+  public enum Operation {
+    ENCRYPT("encrypt"), BREAK("break"), KEY_LENGTH("key length"), STREAM_ENCRYPT("stream encrypt"),
+    STREAM_DECRYPT("stream decrypt"), READ_FILE("read file"), WRITE_FILE("write file"), MAP_FILE("map file");
+
+    private final String label;
+
+    Operation(String label) {
+      this.label = label;
+    }
+
+    /**
+     * @return the name of the operation in the reports and the events
+     */
+    public String label() {
+      return label;
+    }
+  }
+
+  /**
+   * What can be done over JMX
+   */
+  public interface View {
+    /**
+     * @return the text of {@link Metrics#report()}
+     */
+    String getReport();
+
+    /**
+     * @return the number of operations timed since the last reset
+     */
+    long getOperations();
+
+    /**
+     * Clears all the counters
+     */
+    void reset();
+  }
+
+  // one entry per operation and cipher, the last column is for NO_CIPHER and unknown ciphers
+  private static final Stat[][] STATS = new Stat[Operation.values().length][CIPHERS.length + 1];
+
+  static {
+    for (Stat[] row : STATS) {
+      for (int i = 0; i < row.length; ++i) {
+        row[i] = new Stat();
+      }
+    }
+    if (ENABLED) {
+      register();
+    }
+  }
+
+  private Metrics() {
+  }
+
+  /**
+   * Starts timing an operation
+   *
+   * @return the value to give to {@link #stop(Operation, int, long, long)}
+   */
+  static long start() {
+    if (ENABLED || new OperationEvent().isEnabled()) {
+      long now = System.nanoTime();
+      return (now == NOT_STARTED) ? now + 1 : now;
+    }
+    return NOT_STARTED;
+  }
+
+  /**
+   * Ends the timing of an operation
+   *
+   * @param operation the operation timed
+   * @param type      the cipher used : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3 =
+   *                  One time pad, 4 = CBC, 5 = CTR, or NO_CIPHER
+   * @param bytes     the number of bytes processed
+   * @param start     the value returned by {@link #start()}
+   */
+  static void stop(Operation operation, int type, long bytes, long start) {
+    if (start == NOT_STARTED) {
+      return;
+    }
+    long duration = Math.max(System.nanoTime() - start, 0);
+    if (ENABLED) {
+      STATS[operation.ordinal()][column(type)].add(bytes, duration);
+    }
+    OperationEvent event = new OperationEvent();
+    if (event.isEnabled()) {
+      event.operation = operation.label();
+      event.cipher = cipherName(type);
+      event.bytes = bytes;
+      event.elapsed = duration;
+      event.commit();
+    }
+  }
+
+  /**
+   * @return the counters of every operation and cipher used at least once since
+   *         the last reset
+   */
+  public static List<Snapshot> snapshot() {
+    List<Snapshot> snapshots = new ArrayList<Snapshot>();
+    for (Operation operation : Operation.values()) {
+      Stat[] row = STATS[operation.ordinal()];
+      for (int column = 0; column < row.length; ++column) {
+        Snapshot snapshot = row[column].snapshot(operation, (column < CIPHERS.length) ? column : NO_CIPHER);
+        if (snapshot.count() != 0) {
+          snapshots.add(snapshot);
+        }
+      }
+    }
+    return Collections.unmodifiableList(snapshots);
+  }
+
+  /**
+   * @return a table of the counters, one line per operation and cipher used
+   */
+  public static String report() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format(Locale.ROOT, "%-16s %-9s %10s %14s %12s %10s %10s %10s%n", "operation", "cipher",
+        "count", "bytes", "total ms", "p50 us", "p99 us", "max us"));
+    for (Snapshot snapshot : snapshot()) {
+      report.append(String.format(Locale.ROOT, "%-16s %-9s %10d %14d %12.3f %10.1f %10.1f %10.1f%n",
+          snapshot.operation().label(), cipherName(snapshot.cipher()), snapshot.count(), snapshot.bytes(),
+          snapshot.totalNanos() / 1e6, snapshot.percentile(0.5) / 1e3, snapshot.percentile(0.99) / 1e3,
+          snapshot.maxNanos() / 1e3));
+    }
+    if (!ENABLED) {
+      report.append("(disabled, start the JVM with -Dcrypto.metrics=true)").append(System.lineSeparator());
+    }
+    return report.toString();
+  }
+
+  /**
+   * Clears all the counters. Operations running at the same time may or may not
+   * be counted.
+   */
+  public static void reset() {
+    for (Stat[] row : STATS) {
+      for (Stat stat : row) {
+        stat.reset();
+      }
+    }
+  }
+
+  /**
+   * @return the name of a cipher in the reports and the events
+   */
+  static String cipherName(int type) {
+    return (type >= 0 && type < CIPHERS.length) ? CIPHERS[type] : "-";
+  }
+
+  private static int column(int type) {
+    return (type >= 0 && type < CIPHERS.length) ? type : CIPHERS.length;
+  }
+
+  private static void register() {
+    View view = new View() {
+      @Override
+      public String getReport() {
+        return report();
+      }
+
+      @Override
+      public long getOperations() {
+        long operations = 0;
+        for (Snapshot snapshot : snapshot()) {
+          operations += snapshot.count();
+        }
+        return operations;
+      }
+
+      @Override
+      public void reset() {
+        Metrics.reset();
+      }
+    };
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(view, View.class, true),
+          new ObjectName(OBJECT_NAME));
+    } catch (JMException e) { // only the JMX access is lost
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Counters of one operation with one cipher, updated by many threads at once
+   */
+  private static final class Stat {
+    final LongAdder count = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    void add(long processed, long duration) {
+      count.increment();
+      bytes.add(processed);
+      nanos.add(duration);
+      max.accumulate(duration);
+      buckets.incrementAndGet(bucket(duration));
+    }
+
+    void reset() {
+      count.reset();
+      bytes.reset();
+      nanos.reset();
+      max.reset();
+      for (int i = 0; i < BUCKETS; ++i) {
+        buckets.set(i, 0);
+      }
+    }
+
+    Snapshot snapshot(Operation operation, int cipher) {
+      long[] counts = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS; ++i) {
+        counts[i] = buckets.get(i);
+      }
+      return new Snapshot(operation, cipher, count.sum(), bytes.sum(), nanos.sum(), max.get(), counts);
+    }
+
+    static int bucket(long duration) {
+      return (duration <= 1) ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(duration);
+    }
+  }
+
+  /**
+   * The counters of one operation with one cipher at some point
+   */
+  public static final class Snapshot {
+    private final Operation operation;
+    private final int cipher;
+    private final long count;
+    private final long bytes;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long[] buckets;
+
+    private Snapshot(Operation operation, int cipher, long count, long bytes, long totalNanos, long maxNanos,
+        long[] buckets) {
+      this.operation = operation;
+      this.cipher = cipher;
+      this.count = count;
+      this.bytes = bytes;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+      this.buckets = buckets;
+    }
+
+    public Operation operation() {
+      return operation;
+    }
+
+    /**
+     * @return the cipher : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3 = One time pad,
+     *         4 = CBC, 5 = CTR, or NO_CIPHER
+     */
+    public int cipher() {
+      return cipher;
+    }
+
+    public long count() {
+      return count;
+    }
+
+    public long bytes() {
+      return bytes;
+    }
+
+    public long totalNanos() {
+      return totalNanos;
+    }
+
+    public long maxNanos() {
+      return maxNanos;
+    }
+
+    /**
+     * Estimates a percentile of the times from the histogram : the result is the
+     * upper bound of the bucket containing it, so it is at most twice the exact
+     * value, and never more than the maximum
+     *
+     * @param quantile the proportion of the operations, from 0 to 1
+     * @return the time under which this proportion of the operations ended, in
+     *         nanoseconds
+     */
+    public long percentile(double quantile) {
+      assert quantile >= 0 && quantile <= 1;
+
+      long sum = 0;
+      for (long bucket : buckets) {
+        sum += bucket;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * sum));
+      long seen = 0;
+      for (int i = 0; i < buckets.length; ++i) {
+        seen += buckets[i];
+        if (seen >= rank) {
+          long upper = (i >= Long.SIZE - 2) ? Long.MAX_VALUE : (2L << i) - 1;
+          return Math.min(upper, maxNanos);
+        }
+      }
+      return maxNanos;
+    }
+  }
+}
@@ -0,0 +1,311 @@
+package crypto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Scores a text with the log probabilities of its bigrams and quadgrams, much
+ * more discriminating than the letter frequencies of {@link EnglishScorer} :
+ * "the" and "ing" score high, "qzx" or bytes out of [a-z ] score as an n-gram
+ * never seen.
+ *
+ * Every byte is turned into a 5 bit symbol (a to z, space, anything else), so
+ * the last four symbols fit in a 20 bit index and the tables are dense arrays
+ * of floats. The score is computed in a single loop, shifting the next symbol
+ * into the index and adding the two table entries, without any branch on the
+ * content of the text.
+ *
+ * Tables are trained from cleaned texts ({@link #train(byte[])}, or
+ * {@link #train(Path...)} for any corpus), and saved in a compact binary file
+ * holding only the n-grams seen. {@link #english()} loads res/english.ngrams,
+ * built from the texts of res/ with {@link #main(String[])}.
+ */
+public final class NGramScorer implements PlaintextScorer {
+
+  public static final String ENGLISH_FILE = "english.ngrams";
+
+  private static final int MAGIC = 0x4E47524D; // "NGRM"
+  private static final int VERSION = 1;
+
+  private static final int BITS = 5; // bits of a symbol
+  private static final int SPACE_SYMBOL = 26;
+  private static final int OTHER_SYMBOL = 27; // every byte that can't be found in a cleaned text
+  private static final int BIGRAM_MASK = (1 << 2 * BITS) - 1;
+  private static final int QUADGRAM_MASK = (1 << 4 * BITS) - 1;
+  private static final double UNSEEN = 0.01; // count given to the n-grams never seen in the corpus
+
+  private static final byte[] SYMBOLS = new byte[Decrypt.ALPHABETSIZE];
+
+  static {
+    Arrays.fill(SYMBOLS, (byte) OTHER_SYMBOL);
+    for (int letter = 'a'; letter <= 'z'; ++letter) {
+      SYMBOLS[letter] = (byte) (letter - 'a');
+    }
+    SYMBOLS[Decrypt.SPACE] = SPACE_SYMBOL;
+  }
+
+  private final float[] bigrams;
+  private final float[] quadgrams;
+  private final float bigramFloor; // log probability of the n-grams never seen
+  private final float quadgramFloor;
+
+  private NGramScorer(float[] bigrams, float bigramFloor, float[] quadgrams, float quadgramFloor) {
+    this.bigrams = bigrams;
+    this.bigramFloor = bigramFloor;
+    this.quadgrams = quadgrams;
+    this.quadgramFloor = quadgramFloor;
+  }
+
+  /**
+   * @return the scorer trained on the English texts of res/, loaded from
+   *         res/english.ngrams the first time, or trained from
+   *         res/long_text.txt if the file can't be read
+   */
+  public static NGramScorer english() {
+    return English.INSTANCE;
+  }
+
+  /**
+   * Trains a scorer on a cleaned text (lower case letters and spaces)
+   *
+   * @param text the bytes of the corpus
+   * @return the scorer
+   */
+  public static NGramScorer train(byte[] text) {
+    assert text != null;
+
+    return train(text, 0, text.length);
+  }
+
+  /**
+   * Trains a scorer on a part of a cleaned text
+   *
+   * @param text   the bytes of the corpus
+   * @param offset the index of the first byte of the corpus
+   * @param length the length of the corpus
+   * @return the scorer
+   */
+  public static NGramScorer train(byte[] text, int offset, int length) {
+    assert text != null;
+    assert offset >= 0 && length >= 0 && offset + length <= text.length;
+
+    int[] bigramCounts = new int[BIGRAM_MASK + 1];
+    int[] quadgramCounts = new int[QUADGRAM_MASK + 1];
+    int window = 0;
+    for (int i = 0; i < length; ++i) {
+      window = ((window << BITS) | SYMBOLS[text[offset + i] & 0xFF]) & QUADGRAM_MASK;
+      if (i >= 1) {
+        ++bigramCounts[window & BIGRAM_MASK];
+      }
+      if (i >= 3) {
+        ++quadgramCounts[window];
+      }
+    }
+    float[] bigrams = new float[bigramCounts.length];
+    float bigramFloor = logProbabilities(bigramCounts, Math.max(length - 1, 0), bigrams);
+    float[] quadgrams = new float[quadgramCounts.length];
+    float quadgramFloor = logProbabilities(quadgramCounts, Math.max(length - 3, 0), quadgrams);
+    return new NGramScorer(bigrams, bigramFloor, quadgrams, quadgramFloor);
+  }
+
+  /**
+   * Trains a scorer on text files of any kind, read as UTF-8 and cleaned with
+   * {@link TextNormalizer} (line breaks become spaces)
+   *
+   * @param corpora the files of the corpus
+   * @return the scorer
+   * @throws IOException if a file can't be read
+   */
+  public static NGramScorer train(Path... corpora) throws IOException {
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    for (Path corpus : corpora) {
+      String content = new String(Files.readAllBytes(corpus), StandardCharsets.UTF_8);
+      TextNormalizer.normalize(new StringReader(content.replaceAll("\\R", " ")), text);
+      text.write(Decrypt.SPACE);
+    }
+    return train(text.toByteArray());
+  }
+
+  /**
+   * Converts counts to natural log probabilities, the n-grams never seen get the
+   * floor
+   *
+   * @return the floor
+   */
+  private static float logProbabilities(int[] counts, long total, float[] logProbabilities) {
+    double denominator = Math.max(total, 1);
+    float floor = (float) Math.log(UNSEEN / denominator);
+    for (int i = 0; i < counts.length; ++i) {
+      logProbabilities[i] = (counts[i] == 0) ? floor : (float) Math.log(counts[i] / denominator);
+    }
+    return floor;
+  }
+
+  /**
+   * Scores a candidate clear text : the sum of the log probabilities of its
+   * bigrams and quadgrams, divided by its length so that texts of different
+   * lengths can be compared. The closer to 0, the more likely the text.
+   */
+  @Override
+  public double score(byte[] text, int offset, int length) {
+    assert text != null;
+    assert offset >= 0 && length >= 0 && offset + length <= text.length;
+
+    if (length < 2) {
+      return 0;
+    }
+    int end = offset + length;
+    int window = SYMBOLS[text[offset] & 0xFF];
+    double sum = 0;
+    int i = offset + 1;
+    for (; i < end && i < offset + 3; ++i) { // too short for a quadgram yet
+      window = (window << BITS) | SYMBOLS[text[i] & 0xFF];
+      sum += bigrams[window & BIGRAM_MASK];
+    }
+    for (; i < end; ++i) {
+      window = ((window << BITS) | SYMBOLS[text[i] & 0xFF]) & QUADGRAM_MASK;
+      sum += bigrams[window & BIGRAM_MASK] + quadgrams[window];
+    }
+    return sum / length;
+  }
+
+  /**
+   * Saves the tables, only the n-grams seen in the corpus are written
+   *
+   * @param file the file to write, replaced if it exists
+   * @throws IOException if the file can't be written
+   */
+  public void save(Path file) throws IOException {
+    try (OutputStream out = Files.newOutputStream(file)) {
+      save(out);
+    }
+  }
+
+  /**
+   * Writes the tables to a stream, which is not closed
+   *
+   * @param stream the stream receiving the tables
+   * @throws IOException if writing fails
+   */
+  public void save(OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    writeTable(out, bigrams, bigramFloor);
+    writeTable(out, quadgrams, quadgramFloor);
+    out.flush();
+  }
+
+  private static void writeTable(DataOutputStream out, float[] table, float floor) throws IOException {
+    int seen = 0;
+    for (float logProbability : table) {
+      if (logProbability != floor) {
+        ++seen;
+      }
+    }
+    out.writeFloat(floor);
+    out.writeInt(seen);
+    for (int i = 0; i < table.length; ++i) {
+      if (table[i] != floor) {
+        out.writeInt(i);
+        out.writeFloat(table[i]);
+      }
+    }
+  }
+
+  /**
+   * Loads tables saved with {@link #save(Path)}
+   *
+   * @param file the file to read
+   * @return the scorer
+   * @throws IOException if the file can't be read or is not an n-gram file
+   */
+  public static NGramScorer load(Path file) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      return load(in);
+    }
+  }
+
+  /**
+   * Reads tables written with {@link #save(OutputStream)}, the stream is not
+   * closed
+   *
+   * @param stream the stream to read
+   * @return the scorer
+   * @throws IOException if reading fails or the stream is not an n-gram file
+   */
+  public static NGramScorer load(InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new IOException("Not an n-gram file, or written by another version");
+    }
+    float[] bigrams = new float[BIGRAM_MASK + 1];
+    float bigramFloor = readTable(in, bigrams);
+    float[] quadgrams = new float[QUADGRAM_MASK + 1];
+    float quadgramFloor = readTable(in, quadgrams);
+    return new NGramScorer(bigrams, bigramFloor, quadgrams, quadgramFloor);
+  }
+
+  private static float readTable(DataInputStream in, float[] table) throws IOException {
+    float floor = in.readFloat();
+    Arrays.fill(table, floor);
+    int seen = in.readInt();
+    if (seen < 0 || seen > table.length) {
+      throw new IOException("Corrupted n-gram file : " + seen + " entries");
+    }
+    for (int k = 0; k < seen; ++k) {
+      int index = in.readInt();
+      if (index < 0 || index >= table.length) {
+        throw new IOException("Corrupted n-gram file : index " + index);
+      }
+      table[index] = in.readFloat();
+    }
+    return floor;
+  }
+
+  /**
+   * Loaded the first time {@link #english()} is called
+   */
+  private static final class English {
+    static final NGramScorer INSTANCE = loadEnglish();
+
+    private static NGramScorer loadEnglish() {
+      try {
+        return load(Paths.get("res", ENGLISH_FILE));
+      } catch (IOException e) {
+        return train(Helper.stringToBytes(Helper.cleanString(Helper.readStringFromFile("long_text.txt"))));
+      }
+    }
+  }
+
+  /**
+   * Trains tables on some corpora and saves them :
+   * java crypto.NGramScorer OUTPUT CORPUS...
+   *
+   * @param args the file to write, then the text files of the corpus
+   * @throws IOException if a file can't be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage : java crypto.NGramScorer OUTPUT CORPUS...");
+      System.exit(2);
+    }
+    Path[] corpora = new Path[args.length - 1];
+    for (int i = 1; i < args.length; ++i) {
+      corpora[i - 1] = Paths.get(args[i]);
+    }
+    train(corpora).save(Paths.get(args[0]));
+  }
+}
@@ -0,0 +1,39 @@
+package crypto;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of one operation timed by {@link Metrics}. It is
+ * committed once the operation is over, so its own duration is empty : the
+ * time spent is the elapsed field.
+ *
+ * Enable it with a recording, ex : java -XX:StartFlightRecording=settings=profile
+ * or jcmd PID JFR.start, and look for crypto.Operation in the recording.
+ */
+@Name("crypto.Operation")
+@Label("Crypto Operation")
+@Category("Crypto")
+@Description("An encoding, a decoding or a frequency analysis")
+@StackTrace(false)
+final class OperationEvent extends jdk.jfr.Event {
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Cipher")
+  String cipher;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("Elapsed")
+  @Timespan(Timespan.NANOSECONDS)
+  long elapsed;
+}
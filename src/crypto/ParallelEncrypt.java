@@ -0,0 +1,189 @@
+package crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Encodes a message on several threads by cutting it in chunks that are
+ * encoded independently and written at their place in the result.
+ *
+ * Caesar, XOR and the one time pad encode every byte on its own (the pad is
+ * read at the offset of the chunk). Vigenere depends on the number of encoded
+ * letters before the chunk, since spaces do not move the keyword : a first
+ * parallel pass counts the letters of every chunk, and a prefix sum of the
+ * counts gives the key position at the start of each chunk. CTR generates the
+ * key stream from the offset of the chunk. CBC chains every block to the
+ * previous one and is encoded on the calling thread.
+ */
+public class ParallelEncrypt {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20; // 1 MiB
+
+  /**
+   * Encodes a message with the default chunk size on the common pool, spaces are
+   * not encoded (same result as {@link Encrypt#encrypt(String, String, int)})
+   *
+   * @param plainText the byte array representing the message to encode
+   * @param key       the key used to encode
+   * @param type      the method used to encode : 0 = Caesar, 1 = Vigenere, 2 =
+   *                  XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @return an encoded byte array
+   */
+  public static byte[] encrypt(byte[] plainText, byte[] key, int type) {
+    return encrypt(plainText, key, type, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Encodes a message with the threads of an executor
+   *
+   * @param plainText the byte array representing the message to encode
+   * @param key       the key used to encode
+   * @param type      the method used to encode : 0 = Caesar, 1 = Vigenere, 2 =
+   *                  XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @param executor  the executor running the chunks
+   * @param chunkSize the number of bytes encoded by each task
+   * @return an encoded byte array
+   */
+  public static byte[] encrypt(byte[] plainText, byte[] key, int type, ExecutorService executor, int chunkSize) {
+    assert plainText != null;
+    assert plainText.length != 0;
+
+    byte[] cipherText = new byte[plainText.length];
+    encrypt(plainText, cipherText, key, type, executor, chunkSize);
+    return cipherText;
+  }
+
+  /**
+   * Encodes a message into an array of the same length with the threads of an
+   * executor. Source and destination can be the same array, to encode in place.
+   *
+   * @param src       the byte array representing the message to encode
+   * @param dst       the array receiving the result
+   * @param key       the key used to encode
+   * @param type      the method used to encode : 0 = Caesar, 1 = Vigenere, 2 =
+   *                  XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @param executor  the executor running the chunks
+   * @param chunkSize the number of bytes encoded by each task
+   */
+  public static void encrypt(byte[] src, byte[] dst, byte[] key, int type, ExecutorService executor,
+      int chunkSize) {
+    assert src != null && dst != null;
+    assert dst.length >= src.length;
+    assert key != null && key.length != 0;
+    assert executor != null;
+    assert chunkSize > 0;
+
+    int chunks = (src.length + chunkSize - 1) / chunkSize;
+
+    if (type == Encrypt.CBC) { // sequential by nature
+      Encrypt.cbc(src, 0, dst, 0, src.length, key.clone(), 0);
+      return;
+    }
+    if (type == Encrypt.ONETIME) {
+      assert key.length >= src.length;
+    }
+
+    int[] keyPositions = (type == Encrypt.VIGENERE) ? vigenereKeyPositions(src, key.length, executor, chunkSize)
+        : null;
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+    for (int chunk = 0; chunk < chunks; ++chunk) {
+      final int start = chunk * chunkSize;
+      final int length = Math.min(chunkSize, src.length - start);
+      final int keyPosition = (keyPositions != null) ? keyPositions[chunk] : 0;
+      tasks.add(() -> {
+        encryptChunk(src, dst, start, length, key, type, keyPosition);
+        return null;
+      });
+    }
+    runAll(executor, tasks);
+  }
+
+  /**
+   * Computes the position in the Vigenere keyword at the start of every chunk :
+   * the letters (bytes that are not spaces) of each chunk are counted in
+   * parallel, then the counts are summed from the first chunk
+   *
+   * @return the key position at the start of each chunk
+   */
+  private static int[] vigenereKeyPositions(byte[] src, int keyLength, ExecutorService executor, int chunkSize) {
+    int chunks = (src.length + chunkSize - 1) / chunkSize;
+    int[] letters = new int[chunks];
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+    for (int chunk = 0; chunk < chunks; ++chunk) {
+      final int index = chunk;
+      final int start = chunk * chunkSize;
+      final int end = Math.min(start + chunkSize, src.length);
+      tasks.add(() -> {
+        int counter = 0;
+        for (int i = start; i < end; ++i) {
+          if (src[i] != Encrypt.SPACE) {
+            ++counter;
+          }
+        }
+        letters[index] = counter;
+        return null;
+      });
+    }
+    runAll(executor, tasks);
+
+    int[] keyPositions = new int[chunks];
+    long encodedLetters = 0; // prefix sum of the letters before each chunk
+    for (int chunk = 0; chunk < chunks; ++chunk) {
+      keyPositions[chunk] = (int) (encodedLetters % keyLength);
+      encodedLetters += letters[chunk];
+    }
+    return keyPositions;
+  }
+
+  private static void encryptChunk(byte[] src, byte[] dst, int start, int length, byte[] key, int type,
+      int keyPosition) {
+    switch (type) {
+      case Encrypt.CAESAR:
+        Encrypt.caesar(src, start, dst, start, length, key[0], false);
+        break;
+      case Encrypt.VIGENERE:
+        Encrypt.vigenere(src, start, dst, start, length, key, keyPosition, false);
+        break;
+      case Encrypt.XOR:
+        Encrypt.xor(src, start, dst, start, length, key[0], false);
+        break;
+      case Encrypt.ONETIME:
+        Encrypt.oneTimePad(src, start, key, start, dst, start, length);
+        break;
+      case Encrypt.CTR:
+        Encrypt.ctr(src, start, dst, start, length, key, start);
+        break;
+      default: // unknown algorithm, the message is copied untouched
+        if (src != dst) {
+          System.arraycopy(src, start, dst, start, length);
+        }
+        break;
+    }
+  }
+
+  /**
+   * Runs tasks on an executor and waits for all of them
+   */
+  static void runAll(ExecutorService executor, List<Callable<Void>> tasks) {
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while encoding", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
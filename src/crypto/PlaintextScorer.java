@@ -0,0 +1,19 @@
+package crypto;
+
+/**
+ * Gives a score to a candidate clear text, the higher the more likely the text
+ * is the original message. Used to rank the results of the brute force
+ * methods.
+ */
+public interface PlaintextScorer {
+
+  /**
+   * Scores a part of a byte array
+   *
+   * @param text   the candidate clear text
+   * @param offset the index of the first byte to score
+   * @param length the number of bytes to score
+   * @return the score of the text
+   */
+  double score(byte[] text, int offset, int length);
+}
@@ -0,0 +1,46 @@
+package crypto;
+
+/**
+ * Plain loops, one byte at a time. The space test is done outside of the loop
+ * when spaces are encoded, and is a simple conditional otherwise, so that the
+ * JIT can unroll (and often vectorize) the loops.
+ */
+final class ScalarKernels implements CipherKernels {
+
+  @Override
+  public void caesar(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte key, boolean spaceEncoding) {
+    // for cycle that adds the key to the original byte
+    if (spaceEncoding) { // version with space encoding
+      for (int i = 0; i < len; i++) {
+        dst[dstOff + i] = (byte) (src[srcOff + i] + key);
+      }
+    } else { // version without space encoding
+      for (int i = 0; i < len; i++) {
+        byte b = src[srcOff + i];
+        dst[dstOff + i] = (b == Encrypt.SPACE) ? Encrypt.SPACE : (byte) (b + key);
+      }
+    }
+  }
+
+  @Override
+  public void xor(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte key, boolean spaceEncoding) {
+    // cycle that apply xor with the bitwise operator to every byte
+    if (spaceEncoding) { // with space encoding
+      for (int i = 0; i < len; i++) {
+        dst[dstOff + i] = (byte) (src[srcOff + i] ^ key);
+      }
+    } else { // without space encoding
+      for (int i = 0; i < len; i++) {
+        byte b = src[srcOff + i];
+        dst[dstOff + i] = (b == Encrypt.SPACE) ? Encrypt.SPACE : (byte) (b ^ key);
+      }
+    }
+  }
+
+  @Override
+  public void oneTimePad(byte[] src, int srcOff, byte[] pad, int padOff, byte[] dst, int dstOff, int len) {
+    for (int i = 0; i < len; i++) {
+      dst[dstOff + i] = (byte) (src[srcOff + i] ^ pad[padOff + i]); // basically xor
+    }
+  }
+}
@@ -6,17 +6,26 @@ public class Shell {
   private static Scanner keyboard = new Scanner(System.in);
 
   public static String byteArrayToString(byte[] array) {
-    String output = "";
+    StringBuilder output = new StringBuilder(array.length * 4);
     for (byte element : array) {
-      output += element;
-      output += " ";
+      output.append(element);
+      output.append(' ');
     }
 
-    return output;
+    return output.toString();
   }
 
   public static void main(String args[]) {
 
+    // Avec des arguments, pas de questions : voir ShellBatch
+    if (args.length > 0) {
+      int status = ShellBatch.run(args);
+      if (status != 0) {
+        System.exit(status);
+      }
+      return;
+    }
+
     // Demande à l'utilisateur s'il veut coder ou décoder un message
     String welcome = "If you need help understanding how the shell works (Write help) " + System.lineSeparator()
         + "Do you want to code a message or to decode a message ? (Write code or decode) : ";
@@ -109,12 +118,7 @@ public class Shell {
       // Avec caesarbruteforce
       if (methodeDecode == 0) {
         byte[][] result = Decrypt.caesarBruteForce(messageByte);
-        String resultString = "";
-        for (byte[] possibleLine : result) {
-          resultString += Helper.bytesToString(possibleLine);
-          resultString += System.lineSeparator();
-        }
-        Helper.writeStringToFile(resultString, "bruteForceCaesarResult.txt");
+        Helper.writeStringToFile(Decrypt.arrayToString(result), "bruteForceCaesarResult.txt");
       }
 
       // Avec caesarwithfrequencies
@@ -128,12 +132,7 @@ public class Shell {
       // Avec xorbruteforce
       else if (methodeDecode == 2) {
         byte[][] result = Decrypt.xorBruteForce(messageByte);
-        String resultString = "";
-        for (byte[] possibleLine : result) {
-          resultString += Helper.bytesToString(possibleLine);
-          resultString += System.lineSeparator();
-        }
-        Helper.writeStringToFile(resultString, "bruteForceXorResult.txt");
+        Helper.writeStringToFile(Decrypt.arrayToString(result), "bruteForceXorResult.txt");
       }
 
       // Avec vigenerewithfrequencies
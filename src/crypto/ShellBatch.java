@@ -0,0 +1,400 @@
+package crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Non interactive mode of the {@link Shell}, driven by the command line
+ * arguments so that it can be used in scripts :
+ *
+ * <pre>
+ * encrypt|decrypt -c CIPHER (-k KEY | -K KEYFILE) [-o OUTPUT] [-w WORKERS] INPUT...
+ * </pre>
+ *
+ * CIPHER is one of caesar, vigenere, xor, onetime, cbc, ctr. KEY is a list of
+ * bytes separated by commas (12,-34,125), KEYFILE a file holding the raw key
+ * (one time pads). INPUT are files, directories (all the files they contain) or - for
+ * the standard input. OUTPUT is a file or - (standard output, the default) for
+ * a single file, and a directory for several inputs, a directory input or when
+ * it is an existing directory, where the results keep the names of the inputs
+ * (relative to the input directories). An output that is also an input, or two
+ * inputs going to the same output, are rejected before anything is written.
+ *
+ * Files are streamed through a {@link StreamCipher}, several at once with
+ * WORKERS threads (the number of processors by default). The bytes, time and
+ * throughput of every input and the total are reported on the standard error
+ * once all the inputs are done, followed by the {@link Metrics} when the JVM is
+ * started with -Dcrypto.metrics=true.
+ */
+public class ShellBatch {
+
+  private static final String STANDARD_STREAM = "-";
+  private static final String[] CIPHERS = { "caesar", "vigenere", "xor", "onetime", "cbc", "ctr" };
+
+  private static final int OK = 0;
+  private static final int FAILED = 1;
+  private static final int WRONG_USAGE = 2;
+
+  /**
+   * Runs the command given by the arguments
+   *
+   * @param args the command line arguments
+   * @return the exit status : 0 if every input was processed, 1 if some failed,
+   *         2 if the arguments are wrong
+   */
+  public static int run(String[] args) {
+    return run(args, System.out, System.err);
+  }
+
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    Command command;
+    try {
+      command = Command.parse(args);
+    } catch (IllegalArgumentException | IOException e) {
+      err.println("Error : " + e.getMessage());
+      err.println(usage());
+      return WRONG_USAGE;
+    }
+
+    List<Job> jobs;
+    try {
+      jobs = command.jobs();
+    } catch (IllegalArgumentException | IOException e) {
+      err.println("Error : " + e.getMessage());
+      return WRONG_USAGE;
+    }
+
+    long start = System.nanoTime();
+    List<Result> results = new ArrayList<Result>(jobs.size());
+    ExecutorService executor = Executors.newFixedThreadPool(command.workers);
+    try {
+      List<Callable<Result>> tasks = new ArrayList<Callable<Result>>(jobs.size());
+      for (Job job : jobs) {
+        tasks.add(() -> job.run(command, out));
+      }
+      for (Future<Result> future : executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      err.println("Interrupted");
+      return FAILED;
+    } catch (ExecutionException e) {
+      err.println("Error : " + e.getCause());
+      return FAILED;
+    } finally {
+      executor.shutdown();
+    }
+    long elapsed = System.nanoTime() - start;
+
+    return report(results, elapsed, err);
+  }
+
+  /**
+   * Prints the statistics of every input and the total
+   *
+   * @return the exit status
+   */
+  private static int report(List<Result> results, long elapsed, PrintStream err) {
+    long totalBytes = 0;
+    int failures = 0;
+    for (Result result : results) {
+      if (result.error != null) {
+        ++failures;
+        err.println(result.name + " : FAILED (" + result.error + ")");
+        continue;
+      }
+      totalBytes += result.bytes;
+      err.println(result.name + " : " + statistics(result.bytes, result.nanos));
+    }
+    err.println("Total : " + (results.size() - failures) + " of " + results.size() + " inputs, "
+        + statistics(totalBytes, elapsed));
+    if (Metrics.ENABLED) {
+      err.print(Metrics.report());
+    }
+    return (failures == 0) ? OK : FAILED;
+  }
+
+  private static String statistics(long bytes, long nanos) {
+    double seconds = Math.max(nanos, 1) / 1e9;
+    return String.format(Locale.ROOT, "%d bytes in %.3f ms (%.1f MB/s)", bytes, nanos / 1e6, bytes / seconds / 1e6);
+  }
+
+  /**
+   * @return the help printed when the arguments are wrong
+   */
+  static String usage() {
+    return "Usage : encrypt|decrypt -c CIPHER (-k KEY | -K KEYFILE) [-o OUTPUT] [-w WORKERS] INPUT..."
+        + System.lineSeparator() + "  CIPHER  : " + String.join(", ", CIPHERS) + System.lineSeparator()
+        + "  KEY     : bytes separated by commas, ex : 12,-34,125" + System.lineSeparator()
+        + "  KEYFILE : file containing the raw bytes of the key" + System.lineSeparator()
+        + "  INPUT   : files, directories, or - for the standard input" + System.lineSeparator()
+        + "  OUTPUT  : file or - (default) for one file, directory for several inputs or a directory"
+        + System.lineSeparator()
+        + "  WORKERS : number of inputs processed at once (default : number of processors)";
+  }
+
+  /**
+   * The arguments once parsed
+   */
+  private static final class Command {
+    boolean decrypt;
+    int type = -1;
+    byte[] key;
+    String output = STANDARD_STREAM;
+    int workers = Runtime.getRuntime().availableProcessors();
+    final List<String> inputs = new ArrayList<String>();
+
+    static Command parse(String[] args) throws IOException {
+      if (args.length == 0 || !(args[0].equals("encrypt") || args[0].equals("decrypt"))) {
+        throw new IllegalArgumentException("the first argument must be encrypt or decrypt");
+      }
+      Command command = new Command();
+      command.decrypt = args[0].equals("decrypt");
+      for (int i = 1; i < args.length; ++i) {
+        String arg = args[i];
+        if (arg.equals("-c") || arg.equals("-k") || arg.equals("-K") || arg.equals("-o") || arg.equals("-w")) {
+          if (i + 1 == args.length) {
+            throw new IllegalArgumentException("missing value after " + arg);
+          }
+          String value = args[++i];
+          switch (arg) {
+            case "-c":
+              command.type = cipher(value);
+              break;
+            case "-k":
+              command.key = parseKey(value);
+              break;
+            case "-K":
+              command.key = Files.readAllBytes(Paths.get(value));
+              break;
+            case "-o":
+              command.output = value;
+              break;
+            default:
+              command.workers = parseWorkers(value);
+              break;
+          }
+        } else {
+          command.inputs.add(arg);
+        }
+      }
+      if (command.type == -1) {
+        throw new IllegalArgumentException("missing cipher (-c)");
+      }
+      if (command.key == null || command.key.length == 0) {
+        throw new IllegalArgumentException("missing key (-k or -K)");
+      }
+      if (command.inputs.isEmpty()) {
+        throw new IllegalArgumentException("missing input");
+      }
+      return command;
+    }
+
+    /**
+     * Expands the directories of the inputs and pairs every input with its output.
+     * The output is a directory when an input is a directory, when there are
+     * several inputs, or when it is an existing directory. No output directory is
+     * created before all the pairs are checked.
+     *
+     * @throws IllegalArgumentException if an output would replace its input, or
+     *                                  several inputs would go to the same output
+     */
+    List<Job> jobs() throws IOException {
+      List<Path> files = new ArrayList<Path>();
+      List<Path> names = new ArrayList<Path>(); // where each file goes in the output directory
+      boolean standardInput = false;
+      boolean directoryInput = false;
+      for (String input : inputs) {
+        if (input.equals(STANDARD_STREAM)) {
+          standardInput = true;
+          continue;
+        }
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path)) {
+          directoryInput = true;
+          try (Stream<Path> content = Files.walk(path)) {
+            for (Path file : content.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+              files.add(file);
+              names.add(path.relativize(file));
+            }
+          }
+        } else if (Files.isRegularFile(path)) {
+          files.add(path);
+          names.add(path.getFileName());
+        } else {
+          throw new IllegalArgumentException(input + " is not a file or a directory");
+        }
+      }
+
+      int count = files.size() + (standardInput ? 1 : 0);
+      boolean toStandardOutput = output.equals(STANDARD_STREAM);
+      List<Job> jobs = new ArrayList<Job>(count);
+      if (count == 1 && !directoryInput && (toStandardOutput || !Files.isDirectory(Paths.get(output)))) {
+        // the output is a file or the standard output
+        Path target = toStandardOutput ? null : Paths.get(output);
+        Path source = standardInput ? null : files.get(0);
+        checkNotSame(source, target);
+        jobs.add(new Job(source, target));
+        return jobs;
+      }
+
+      if (standardInput || toStandardOutput) {
+        throw new IllegalArgumentException(
+            "several inputs or a directory need an output directory, and can't use -");
+      }
+      Path directory = Paths.get(output);
+      Map<Path, Path> sources = new HashMap<Path, Path>(); // normalized target -> input
+      for (int i = 0; i < files.size(); ++i) {
+        Path target = directory.resolve(names.get(i));
+        Path previous = sources.put(target.toAbsolutePath().normalize(), files.get(i));
+        if (previous != null) {
+          throw new IllegalArgumentException(
+              previous + " and " + files.get(i) + " would both be written to " + target);
+        }
+        checkNotSame(files.get(i), target);
+        jobs.add(new Job(files.get(i), target));
+      }
+      for (Job job : jobs) {
+        Files.createDirectories(job.output.getParent());
+      }
+      return jobs;
+    }
+
+    /**
+     * Rejects an output that is its own input, the input would be emptied before
+     * being read
+     */
+    private static void checkNotSame(Path input, Path output) throws IOException {
+      if (input == null || output == null) {
+        return;
+      }
+      boolean same = Files.exists(output) ? Files.isSameFile(input, output)
+          : input.toAbsolutePath().normalize().equals(output.toAbsolutePath().normalize());
+      if (same) {
+        throw new IllegalArgumentException(output + " is also an input");
+      }
+    }
+
+    private static int cipher(String name) {
+      for (int type = 0; type < CIPHERS.length; ++type) {
+        if (CIPHERS[type].equalsIgnoreCase(name)) {
+          return type;
+        }
+      }
+      throw new IllegalArgumentException("unknown cipher " + name);
+    }
+
+    private static byte[] parseKey(String value) {
+      String[] parts = value.split(",");
+      byte[] key = new byte[parts.length];
+      for (int i = 0; i < parts.length; ++i) {
+        try {
+          int b = Integer.parseInt(parts[i].trim());
+          if (b < Byte.MIN_VALUE || b > 255) {
+            throw new IllegalArgumentException("key byte out of range : " + parts[i]);
+          }
+          key[i] = (byte) b;
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("key byte is not a number : " + parts[i]);
+        }
+      }
+      return key;
+    }
+
+    private static int parseWorkers(String value) {
+      try {
+        int workers = Integer.parseInt(value);
+        if (workers > 0) {
+          return workers;
+        }
+      } catch (NumberFormatException e) {
+        // reported below
+      }
+      throw new IllegalArgumentException("the number of workers must be a positive integer : " + value);
+    }
+  }
+
+  /**
+   * One input and where its result goes, null for the standard streams
+   */
+  private static final class Job {
+    final Path input;
+    final Path output;
+
+    Job(Path input, Path output) {
+      this.input = input;
+      this.output = output;
+    }
+
+    Result run(Command command, PrintStream standardOutput) {
+      String name = (input == null) ? "<stdin>" : input.toString();
+      StreamCipher cipher = new StreamCipher(command.type, command.key, command.decrypt);
+      long start = System.nanoTime();
+      try {
+        long bytes;
+        if (input != null && output != null) { // file to file, through channels
+          try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+              FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                  StandardOpenOption.TRUNCATE_EXISTING)) {
+            bytes = cipher.transfer(in, out);
+          }
+        } else if (input != null) { // file to the standard output
+          try (InputStream in = Files.newInputStream(input)) {
+            bytes = cipher.transfer(in, standardOutput);
+          }
+        } else if (output != null) { // standard input to a file
+          try (OutputStream out = Files.newOutputStream(output)) {
+            bytes = cipher.transfer(System.in, out);
+          }
+        } else {
+          bytes = cipher.transfer(System.in, standardOutput);
+        }
+        return new Result(name, bytes, System.nanoTime() - start, null);
+      } catch (IOException | RuntimeException e) {
+        String error = (e.getMessage() != null) ? e.getMessage() : e.toString();
+        return new Result(name + (output != null ? " -> " + output : ""), 0, 0, error);
+      }
+    }
+  }
+
+  /**
+   * What happened to one input
+   */
+  private static final class Result {
+    final String name;
+    final long bytes;
+    final long nanos;
+    final String error;
+
+    Result(String name, long bytes, long nanos, String error) {
+      this.name = name;
+      this.bytes = bytes;
+      this.nanos = nanos;
+      this.error = error;
+    }
+  }
+
+  public static void main(String[] args) {
+    System.exit(run(args));
+  }
+}
@@ -0,0 +1,280 @@
+package crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Stateful version of the ciphers of {@link Encrypt} that processes a message
+ * chunk by chunk. The state needed to continue a message (Vigenere key
+ * position, CBC chaining block, one time pad offset, CTR counter) is kept
+ * between two calls, so the result is the same as encoding the whole message at
+ * once while only a chunk of CHUNK_SIZE bytes is ever kept in memory.
+ */
+public class StreamCipher {
+
+  public static final int CHUNK_SIZE = 1 << 16; // 64 KiB
+
+  private final int type;
+  private final byte[] key; // already inverted to decode Caesar and Vigenere
+  private final boolean decrypt;
+
+  private long position = 0; // bytes already processed, offset in the one time pad and the CTR key stream
+  private int keyPointer = 0; // next byte of the Vigenere keyword to use, spaces are skipped
+  private final byte[] chain; // last ciphered block for CBC
+  private int chainPointer = 0; // position of the next byte inside its CBC block
+
+  /**
+   * Creates a stream cipher to encode a message
+   *
+   * @param type the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3
+   *             = One time pad, 4 = CBC, 5 = CTR
+   * @param key  the key used to encode (the whole pad for the one time pad, the
+   *             IV for CBC and CTR)
+   */
+  public StreamCipher(int type, byte[] key) {
+    this(type, key, false);
+  }
+
+  /**
+   * Creates a stream cipher to encode or decode a message
+   *
+   * @param type    the method used : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3 = One
+   *                time pad, 4 = CBC, 5 = CTR
+   * @param key     the key used to encode the message
+   * @param decrypt if true, the stream is decoded with the same key instead
+   */
+  public StreamCipher(int type, byte[] key, boolean decrypt) {
+    assert key != null;
+    assert key.length != 0;
+
+    this.type = type;
+    boolean shift = type == Encrypt.CAESAR || type == Encrypt.VIGENERE;
+    this.key = (decrypt && shift) ? Helper.keyInverterVigenere(key) : key.clone();
+    this.decrypt = decrypt;
+    this.chain = (type == Encrypt.CBC) ? key.clone() : null;
+  }
+
+  /**
+   * @return the method used : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3 = One time
+   *         pad, 4 = CBC, 5 = CTR
+   */
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * @return the number of bytes processed so far
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Encodes (or decodes) the next part of the message in place
+   *
+   * @param buffer the array containing the next part of the message
+   * @param offset the index of the first byte to process
+   * @param length the number of bytes to process
+   */
+  public void update(byte[] buffer, int offset, int length) {
+    assert buffer != null;
+    assert offset >= 0 && length >= 0 && offset + length <= buffer.length;
+
+    switch (type) {
+      case Encrypt.CAESAR:
+        Encrypt.caesar(buffer, offset, buffer, offset, length, key[0], false);
+        break;
+      case Encrypt.VIGENERE:
+        keyPointer = Encrypt.vigenere(buffer, offset, buffer, offset, length, key, keyPointer, false);
+        break;
+      case Encrypt.XOR:
+        Encrypt.xor(buffer, offset, buffer, offset, length, key[0], false);
+        break;
+      case Encrypt.ONETIME:
+        Encrypt.oneTimePad(buffer, offset, key, padOffset(length), buffer, offset, length);
+        break;
+      case Encrypt.CBC:
+        chainPointer = decrypt ? Decrypt.decryptCBC(buffer, offset, buffer, offset, length, chain, chainPointer)
+            : Encrypt.cbc(buffer, offset, buffer, offset, length, chain, chainPointer);
+        break;
+      case Encrypt.CTR: // decoded with the same key stream
+        Encrypt.ctr(buffer, offset, buffer, offset, length, key, position);
+        break;
+      default: // unknown algorithm, the message is left untouched
+        break;
+    }
+    position += length;
+  }
+
+  /**
+   * Encodes (or decodes) in place the bytes between the position and the limit
+   * of the buffer. The position of the buffer is not modified.
+   *
+   * @param buffer the buffer containing the next part of the message, can be
+   *               direct or memory mapped
+   */
+  public void update(ByteBuffer buffer) {
+    assert buffer != null;
+
+    int start = buffer.position();
+    int length = buffer.remaining();
+    switch (type) {
+      case Encrypt.CAESAR:
+        Encrypt.caesar(buffer, buffer, key[0], false);
+        break;
+      case Encrypt.VIGENERE:
+        keyPointer = Encrypt.vigenere(buffer, buffer, key, keyPointer, false);
+        break;
+      case Encrypt.XOR:
+        Encrypt.xor(buffer, buffer, key[0], false);
+        break;
+      case Encrypt.ONETIME:
+        Encrypt.oneTimePad(buffer, key, padOffset(length), buffer);
+        break;
+      case Encrypt.CBC:
+        chainPointer = decrypt ? Decrypt.decryptCBC(buffer, buffer, chain, chainPointer)
+            : Encrypt.cbc(buffer, buffer, chain, chainPointer);
+        break;
+      case Encrypt.CTR:
+        Encrypt.ctr(buffer, buffer, key, position);
+        break;
+      default: // unknown algorithm, the message is left untouched
+        break;
+    }
+    buffer.position(start);
+    position += length;
+  }
+
+  /**
+   * Reads the whole input stream, and writes its encoding to the output stream.
+   * Streams are not closed.
+   *
+   * @param in  the stream to read the message from
+   * @param out the stream to write the result to
+   * @return the number of bytes processed
+   * @throws IOException if reading or writing fails
+   */
+  public long transfer(InputStream in, OutputStream out) throws IOException {
+    long start = Metrics.start();
+    byte[] chunk = new byte[CHUNK_SIZE];
+    long total = 0;
+    int read;
+    while ((read = in.read(chunk, 0, CHUNK_SIZE)) != -1) {
+      update(chunk, 0, read);
+      out.write(chunk, 0, read);
+      total += read;
+    }
+    out.flush();
+    Metrics.stop(operation(), type, total, start);
+    return total;
+  }
+
+  /**
+   * Reads the whole input channel, and writes its encoding to the output
+   * channel. Channels are not closed.
+   *
+   * @param in  the channel to read the message from
+   * @param out the channel to write the result to
+   * @return the number of bytes processed
+   * @throws IOException if reading or writing fails
+   */
+  public long transfer(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+    long start = Metrics.start();
+    ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    long total = 0;
+    while (in.read(chunk) != -1) {
+      chunk.flip();
+      update(chunk);
+      total += chunk.remaining();
+      while (chunk.hasRemaining()) {
+        out.write(chunk);
+      }
+      chunk.clear();
+    }
+    Metrics.stop(operation(), type, total, start);
+    return total;
+  }
+
+  private Metrics.Operation operation() {
+    return decrypt ? Metrics.Operation.STREAM_DECRYPT : Metrics.Operation.STREAM_ENCRYPT;
+  }
+
+  /**
+   * Encodes a stream in chunks, see {@link #transfer(InputStream, OutputStream)}
+   *
+   * @param in   the stream to read the message from
+   * @param out  the stream to write the encoded message to
+   * @param key  the key used to encode
+   * @param type the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3
+   *             = One time pad, 4 = CBC, 5 = CTR
+   * @return the number of bytes encoded
+   * @throws IOException if reading or writing fails
+   */
+  public static long encrypt(InputStream in, OutputStream out, byte[] key, int type) throws IOException {
+    return new StreamCipher(type, key).transfer(in, out);
+  }
+
+  /**
+   * Decodes a stream in chunks, see {@link #transfer(InputStream, OutputStream)}
+   *
+   * @param in   the stream to read the encoded message from
+   * @param out  the stream to write the clear text to
+   * @param key  the key that was used to encode
+   * @param type the method that was used to encode : 0 = Caesar, 1 = Vigenere, 2
+   *             = XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @return the number of bytes decoded
+   * @throws IOException if reading or writing fails
+   */
+  public static long decrypt(InputStream in, OutputStream out, byte[] key, int type) throws IOException {
+    return new StreamCipher(type, key, true).transfer(in, out);
+  }
+
+  /**
+   * Encodes a channel in chunks, see
+   * {@link #transfer(ReadableByteChannel, WritableByteChannel)}
+   *
+   * @param in   the channel to read the message from
+   * @param out  the channel to write the encoded message to
+   * @param key  the key used to encode
+   * @param type the method used to encode : 0 = Caesar, 1 = Vigenere, 2 = XOR, 3
+   *             = One time pad, 4 = CBC, 5 = CTR
+   * @return the number of bytes encoded
+   * @throws IOException if reading or writing fails
+   */
+  public static long encrypt(ReadableByteChannel in, WritableByteChannel out, byte[] key, int type)
+      throws IOException {
+    return new StreamCipher(type, key).transfer(in, out);
+  }
+
+  /**
+   * Decodes a channel in chunks, see
+   * {@link #transfer(ReadableByteChannel, WritableByteChannel)}
+   *
+   * @param in   the channel to read the encoded message from
+   * @param out  the channel to write the clear text to
+   * @param key  the key that was used to encode
+   * @param type the method that was used to encode : 0 = Caesar, 1 = Vigenere, 2
+   *             = XOR, 3 = One time pad, 4 = CBC, 5 = CTR
+   * @return the number of bytes decoded
+   * @throws IOException if reading or writing fails
+   */
+  public static long decrypt(ReadableByteChannel in, WritableByteChannel out, byte[] key, int type)
+      throws IOException {
+    return new StreamCipher(type, key, true).transfer(in, out);
+  }
+
+  /**
+   * @param length the number of bytes about to be processed
+   * @return the offset in the one time pad of the next byte
+   */
+  private int padOffset(int length) {
+    if (position + length > key.length) {
+      throw new IllegalStateException("The one time pad is shorter than the message");
+    }
+    return (int) position;
+  }
+}
@@ -0,0 +1,186 @@
+package crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cleans a text the way {@link Helper#cleanString(String)} does (lower case
+ * letters are kept, upper case letters are lowered, ':,;.' become spaces and
+ * every other character is dropped) in a single pass, writing the result
+ * directly as bytes.
+ *
+ * ASCII characters are looked up in a table, the others are lowered with
+ * {@link Character#toLowerCase(char)} (some of them become a letter, like the
+ * Kelvin sign) and dropped if they are not a letter then. Lowering does not
+ * depend on the default locale.
+ */
+public final class TextNormalizer {
+
+  public static final int BUFFER_SIZE = 1 << 13; // characters read at once by the streaming variants
+
+  private static final byte DROPPED = 0; // never part of a cleaned text
+  private static final byte[] ASCII = new byte[128];
+
+  static {
+    for (char c = 'a'; c <= 'z'; ++c) {
+      ASCII[c] = (byte) c;
+      ASCII[Character.toUpperCase(c)] = (byte) c;
+    }
+    ASCII[' '] = Encrypt.SPACE;
+    for (char c : ":,;.".toCharArray()) {
+      ASCII[c] = Encrypt.SPACE;
+    }
+  }
+
+  private TextNormalizer() {
+  }
+
+  /**
+   * Cleans a text into a byte array, without allocating
+   *
+   * @param text   the text to clean
+   * @param dst    the array receiving the cleaned text, it must have room for
+   *               text.length() bytes
+   * @param dstOff the index in dst of the first byte written
+   * @return the number of bytes written
+   */
+  public static int normalize(CharSequence text, byte[] dst, int dstOff) {
+    return normalize(text, 0, text.length(), dst, dstOff);
+  }
+
+  /**
+   * Cleans a part of a text into a byte array, without allocating
+   *
+   * @param text   the text to clean
+   * @param from   the index of the first character to clean
+   * @param to     the index after the last character to clean
+   * @param dst    the array receiving the cleaned text, it must have room for to
+   *               - from bytes
+   * @param dstOff the index in dst of the first byte written
+   * @return the number of bytes written
+   */
+  public static int normalize(CharSequence text, int from, int to, byte[] dst, int dstOff) {
+    assert text != null && dst != null;
+    assert from >= 0 && from <= to && to <= text.length();
+    assert dstOff >= 0 && dstOff + (to - from) <= dst.length;
+
+    int written = dstOff;
+    for (int i = from; i < to; ++i) {
+      byte b = normalize(text.charAt(i));
+      if (b != DROPPED) {
+        dst[written++] = b;
+      }
+    }
+    return written - dstOff;
+  }
+
+  /**
+   * Cleans a part of an array of characters into a byte array, without
+   * allocating
+   *
+   * @param text   the characters to clean
+   * @param from   the index of the first character to clean
+   * @param length the number of characters to clean
+   * @param dst    the array receiving the cleaned text, it must have room for
+   *               length bytes
+   * @param dstOff the index in dst of the first byte written
+   * @return the number of bytes written
+   */
+  public static int normalize(char[] text, int from, int length, byte[] dst, int dstOff) {
+    assert text != null && dst != null;
+    assert from >= 0 && length >= 0 && from + length <= text.length;
+    assert dstOff >= 0 && dstOff + length <= dst.length;
+
+    int written = dstOff;
+    for (int i = from; i < from + length; ++i) {
+      byte b = normalize(text[i]);
+      if (b != DROPPED) {
+        dst[written++] = b;
+      }
+    }
+    return written - dstOff;
+  }
+
+  /**
+   * @param text the text to clean
+   * @return the bytes of the cleaned text
+   */
+  public static byte[] normalize(CharSequence text) {
+    assert text != null;
+
+    byte[] buffer = new byte[text.length()];
+    int length = normalize(text, buffer, 0);
+    return (length == buffer.length) ? buffer : Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * @param text the text to clean
+   * @return the cleaned text, see {@link Helper#cleanString(String)}
+   */
+  public static String normalizeToString(CharSequence text) {
+    assert text != null;
+
+    byte[] buffer = new byte[text.length()];
+    int length = normalize(text, buffer, 0);
+    return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Reads a whole text and writes it cleaned to a stream, BUFFER_SIZE characters
+   * at a time. Neither the reader nor the stream is closed.
+   *
+   * @param in  the text to clean
+   * @param out the stream receiving the bytes of the cleaned text
+   * @return the number of bytes written
+   * @throws IOException if reading or writing fails
+   */
+  public static long normalize(Reader in, OutputStream out) throws IOException {
+    assert in != null && out != null;
+
+    char[] chars = new char[BUFFER_SIZE];
+    byte[] bytes = new byte[BUFFER_SIZE];
+    long total = 0;
+    int read;
+    while ((read = in.read(chars, 0, BUFFER_SIZE)) != -1) {
+      int length = normalize(chars, 0, read, bytes, 0);
+      out.write(bytes, 0, length);
+      total += length;
+    }
+    out.flush();
+    return total;
+  }
+
+  /**
+   * Reads a whole text from a stream of bytes in a given charset, and writes it
+   * cleaned to another stream. Neither stream is closed.
+   *
+   * @param in      the bytes of the text to clean
+   * @param charset the charset of the text
+   * @param out     the stream receiving the bytes of the cleaned text
+   * @return the number of bytes written
+   * @throws IOException if reading or writing fails
+   */
+  public static long normalize(InputStream in, Charset charset, OutputStream out) throws IOException {
+    assert in != null && charset != null;
+
+    return normalize(new InputStreamReader(in, charset), out);
+  }
+
+  /**
+   * @param c a character
+   * @return the character once cleaned, or DROPPED
+   */
+  private static byte normalize(char c) {
+    if (c < ASCII.length) {
+      return ASCII[c];
+    }
+    char lower = Character.toLowerCase(c);
+    return (lower >= 'a' && lower <= 'z') ? (byte) lower : DROPPED;
+  }
+}
@@ -0,0 +1,262 @@
+package crypto;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Breaks the repeating key XOR of {@link Encrypt#xor(byte[], byte[])} in two
+ * steps.
+ *
+ * The key size comes from the Hamming distance between the cipher and itself
+ * shifted by a candidate size k : when k is a multiple of the key size, both
+ * bytes were encoded with the same key byte, which cancels out, and the distance
+ * is the one between two English characters (about 2.5 bits out of 8),
+ * otherwise it is about 4 bits. Comparing every byte with the one k bytes
+ * further is comparing every block of k bytes with the next one, for all the
+ * alignments of the blocks at once, and it is done 8 bytes at a time with
+ * {@link Long#bitCount(long)} on the first SAMPLE_BYTES bytes.
+ *
+ * Once the size is known, every column of the cipher (the bytes encoded with the
+ * same key byte) is a single byte XOR. The columns are solved in parallel : the
+ * histogram of a column gives the score of the 256 keys with the weights of
+ * {@link EnglishScorer}, without decoding anything, so the cost is a single
+ * read of the cipher whatever the number of keys.
+ */
+public class XorCracker {
+
+  public static final int DEFAULT_MAX_KEY_SIZE = 40;
+  public static final int SAMPLE_BYTES = 1 << 16; // bytes compared to find the key size
+
+  // relative difference of distance under which the shorter key size is preferred
+  private static final double TOLERANCE = 0.1;
+  // relative difference of clear text weight under which the shorter key size is preferred
+  private static final double MARGIN = 0.02;
+  private static final int COLUMNS_PER_TASK = 4; // number of columns solved by a task without splitting
+
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+      ByteOrder.LITTLE_ENDIAN);
+
+  /**
+   * Finds the key of a repeating key XOR cipher text, of at most
+   * DEFAULT_MAX_KEY_SIZE bytes
+   *
+   * @param cipher the byte array representing the encoded text
+   * @return the key, empty if the cipher is too short to compare two blocks
+   */
+  public static byte[] crack(byte[] cipher) {
+    return crack(cipher, DEFAULT_MAX_KEY_SIZE);
+  }
+
+  /**
+   * Finds the key of a repeating key XOR cipher text
+   *
+   * @param cipher     the byte array representing the encoded text
+   * @param maxKeySize the longest key size accepted
+   * @return the key, empty if the cipher is too short to compare two blocks
+   */
+  public static byte[] crack(byte[] cipher, int maxKeySize) {
+    int keySize = findKeySize(cipher, maxKeySize);
+    return (keySize == 0) ? new byte[0] : findKey(cipher, keySize, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Finds the size of the key. The distance of a single shift depends on the
+   * clear text too (neighbouring characters differ more than distant ones), so
+   * every size is scored with the average distance of all its multiples : only
+   * the key size and its multiples have low distances at all their multiples.
+   * A key whose bytes share most of their bits can make one of its divisors
+   * score almost as well, so the sizes within 10 % of the best are all tried on
+   * the sample, and the shortest one whose clear text scores about as well as
+   * the best clear text is kept.
+   *
+   * @param cipher     the byte array representing the encoded text
+   * @param maxKeySize the longest key size accepted
+   * @return the size of the key, 0 if the cipher is too short to compare two
+   *         blocks
+   */
+  public static int findKeySize(byte[] cipher, int maxKeySize) {
+    double[] distances = distances(cipher, maxKeySize);
+    double[] scores = new double[distances.length];
+    double best = Double.POSITIVE_INFINITY;
+    for (int k = 1; k < distances.length; ++k) {
+      double sum = 0;
+      int multiples = 0;
+      for (int m = k; m < distances.length && distances[m] != Double.POSITIVE_INFINITY; m += k) {
+        sum += distances[m];
+        ++multiples;
+      }
+      scores[k] = (multiples == 0) ? Double.POSITIVE_INFINITY : sum / multiples;
+      best = Math.min(best, scores[k]);
+    }
+    if (best == Double.POSITIVE_INFINITY) {
+      return 0;
+    }
+
+    int sample = Math.min(cipher.length, SAMPLE_BYTES);
+    int[] candidates = new int[scores.length];
+    double[] weights = new double[scores.length];
+    int count = 0;
+    double bestWeight = Double.NEGATIVE_INFINITY;
+    for (int k = 1; k < scores.length; ++k) {
+      if (scores[k] <= (1 + TOLERANCE) * best) {
+        candidates[count] = k;
+        weights[count] = clearTextWeight(cipher, sample, k);
+        bestWeight = Math.max(bestWeight, weights[count]);
+        ++count;
+      }
+    }
+    for (int i = 0; i < count; ++i) { // a longer key always fits a bit better, by chance
+      if (weights[i] >= bestWeight - MARGIN * Math.abs(bestWeight)) {
+        return candidates[i];
+      }
+    }
+    return candidates[0];
+  }
+
+  /**
+   * Computes the normalized Hamming distance of every key size : the average
+   * number of different bits between a byte and the one k bytes further
+   *
+   * @param cipher     the byte array representing the encoded text
+   * @param maxKeySize the longest key size computed
+   * @return the distances in bits per byte, indexed by key size from 0 to
+   *         maxKeySize, infinite for the sizes too long to compare two blocks
+   */
+  public static double[] distances(byte[] cipher, int maxKeySize) {
+    assert cipher != null;
+    assert maxKeySize > 0;
+
+    int limit = Math.min(cipher.length, SAMPLE_BYTES);
+    double[] distances = new double[maxKeySize + 1];
+    distances[0] = Double.POSITIVE_INFINITY;
+    for (int k = 1; k <= maxKeySize; ++k) {
+      int compared = limit - k; // bytes having a byte k bytes further
+      if (compared < k) { // not even two whole blocks
+        distances[k] = Double.POSITIVE_INFINITY;
+        continue;
+      }
+      long bits = 0;
+      int i = 0;
+      for (; i + Long.BYTES <= compared; i += Long.BYTES) {
+        bits += Long.bitCount((long) LONGS.get(cipher, i) ^ (long) LONGS.get(cipher, i + k));
+      }
+      for (; i < compared; ++i) {
+        bits += Integer.bitCount((cipher[i] ^ cipher[i + k]) & 0xFF);
+      }
+      distances[k] = (double) bits / compared;
+    }
+    return distances;
+  }
+
+  /**
+   * Finds every byte of a key whose size is known, the columns being solved in
+   * parallel
+   *
+   * @param cipher  the byte array representing the encoded text
+   * @param keySize the size of the key
+   * @param pool    the pool solving the columns
+   * @return the key
+   */
+  public static byte[] findKey(byte[] cipher, int keySize, ForkJoinPool pool) {
+    assert cipher != null;
+    assert keySize > 0;
+    assert pool != null;
+
+    byte[] key = new byte[keySize];
+    pool.invoke(new Columns(cipher, key, 0, keySize));
+    return key;
+  }
+
+  /**
+   * Sums the weights of the clear text given by the best key of every column,
+   * for a part of the cipher
+   */
+  private static double clearTextWeight(byte[] cipher, int length, int keySize) {
+    int[] histogram = new int[Decrypt.ALPHABETSIZE];
+    double sum = 0;
+    for (int column = 0; column < keySize; ++column) {
+      fillHistogram(histogram, cipher, length, column, keySize);
+      sum += weight(histogram, bestKey(histogram));
+    }
+    return sum / length;
+  }
+
+  /**
+   * Counts the bytes of a column
+   */
+  private static void fillHistogram(int[] histogram, byte[] cipher, int length, int column, int keySize) {
+    Arrays.fill(histogram, 0);
+    for (int i = column; i < length; i += keySize) {
+      ++histogram[cipher[i] & 0xFF];
+    }
+  }
+
+  /**
+   * Finds the key of a single byte XOR from the histogram of the cipher bytes :
+   * the key maximizing the sum of the weights of the decoded bytes
+   */
+  private static byte bestKey(int[] histogram) {
+    int best = 0;
+    double bestWeight = Double.NEGATIVE_INFINITY;
+    for (int key = 0; key < Decrypt.ALPHABETSIZE; ++key) {
+      double weight = weight(histogram, (byte) key);
+      if (weight > bestWeight) {
+        bestWeight = weight;
+        best = key;
+      }
+    }
+    return (byte) best;
+  }
+
+  /**
+   * @return the sum of the weights of the bytes counted in the histogram once
+   *         decoded with the key
+   */
+  private static double weight(int[] histogram, byte key) {
+    double sum = 0;
+    for (int b = 0; b < Decrypt.ALPHABETSIZE; ++b) {
+      if (histogram[b] != 0) {
+        sum += histogram[b] * EnglishScorer.INSTANCE.weight((byte) (b ^ key));
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Task solving a range of columns, splitting it in two halves while it is too
+   * large
+   */
+  private static class Columns extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] cipher;
+    private final byte[] key;
+    private final int from;
+    private final int to;
+
+    Columns(byte[] cipher, byte[] key, int from, int to) {
+      this.cipher = cipher;
+      this.key = key;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > COLUMNS_PER_TASK) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Columns(cipher, key, from, middle), new Columns(cipher, key, middle, to));
+        return;
+      }
+      int[] histogram = new int[Decrypt.ALPHABETSIZE];
+      for (int column = from; column < to; ++column) {
+        fillHistogram(histogram, cipher, cipher.length, column, key.length);
+        key[column] = bestKey(histogram);
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package crypto;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Caesar, XOR and one time pad loops on the widest byte vectors of the CPU.
+ * Spaces are kept with a masked blend instead of a branch. The last bytes that
+ * do not fill a vector go through the scalar loops.
+ *
+ * Kept out of src/ because it needs the jdk.incubator.vector module to
+ * compile, see {@link CipherKernels#load()}.
+ */
+final class VectorKernels implements CipherKernels {
+
+  private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+  private final ScalarKernels tail = new ScalarKernels();
+
+  @Override
+  public void caesar(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte key, boolean spaceEncoding) {
+    int i = 0;
+    int bound = SPECIES.loopBound(len);
+    for (; i < bound; i += SPECIES.length()) {
+      ByteVector plain = ByteVector.fromArray(SPECIES, src, srcOff + i);
+      ByteVector cipher = plain.add(key);
+      if (!spaceEncoding) {
+        VectorMask<Byte> spaces = plain.eq(Encrypt.SPACE);
+        cipher = cipher.blend(plain, spaces); // spaces are left untouched
+      }
+      cipher.intoArray(dst, dstOff + i);
+    }
+    tail.caesar(src, srcOff + i, dst, dstOff + i, len - i, key, spaceEncoding);
+  }
+
+  @Override
+  public void xor(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte key, boolean spaceEncoding) {
+    int i = 0;
+    int bound = SPECIES.loopBound(len);
+    for (; i < bound; i += SPECIES.length()) {
+      ByteVector plain = ByteVector.fromArray(SPECIES, src, srcOff + i);
+      ByteVector cipher = plain.lanewise(VectorOperators.XOR, key);
+      if (!spaceEncoding) {
+        cipher = cipher.blend(plain, plain.eq(Encrypt.SPACE)); // spaces are left untouched
+      }
+      cipher.intoArray(dst, dstOff + i);
+    }
+    tail.xor(src, srcOff + i, dst, dstOff + i, len - i, key, spaceEncoding);
+  }
+
+  @Override
+  public void oneTimePad(byte[] src, int srcOff, byte[] pad, int padOff, byte[] dst, int dstOff, int len) {
+    int i = 0;
+    int bound = SPECIES.loopBound(len);
+    for (; i < bound; i += SPECIES.length()) {
+      ByteVector plain = ByteVector.fromArray(SPECIES, src, srcOff + i);
+      ByteVector key = ByteVector.fromArray(SPECIES, pad, padOff + i);
+      plain.lanewise(VectorOperators.XOR, key).intoArray(dst, dstOff + i);
+    }
+    tail.oneTimePad(src, srcOff + i, pad, padOff + i, dst, dstOff + i, len - i);
+  }
+}